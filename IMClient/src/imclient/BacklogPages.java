@@ -0,0 +1,135 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BacklogPages holds the offline messages that have arrived but not yet been shown, so the backlog
+ * can be paged with /more while the connection goes on reading. Messages are kept on the heap up to
+ * a limit in characters; past that they are appended to a temporary file and read back in order as
+ * pages are shown, so a week-long backlog still costs bounded heap. The file is deleted once it has
+ * been read to the end, and by clear(). Only the event loop touches it.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BacklogPages {
+    private final static Logger logger = Logger.getLogger(BacklogPages.class.getCanonicalName());
+    public static final int DEFAULT_MEMORY_CHARS = 4 * 1024 * 1024;
+
+    private final int memoryChars;                        // Characters held on the heap before spilling.
+    private final ArrayDeque<String> held = new ArrayDeque<>();    // The oldest messages not yet shown.
+    private long heldChars;
+    private Path spill;                                    // Newer messages, or null if none have spilled.
+    private DataOutputStream spillOut;
+    private DataInputStream spillIn;
+    private int spilled;                                // Messages in the spill file not yet read back.
+
+    public BacklogPages() {
+        this(DEFAULT_MEMORY_CHARS);
+    }
+
+    public BacklogPages(int memoryChars) {
+        this.memoryChars = memoryChars;
+    }
+
+    // Messages waiting to be shown.
+    public int size() {
+        return held.size() + spilled;
+    }
+
+    // Hold message until it is taken. Once anything has spilled, later messages follow it to the file
+    // to keep their order. If the file can't be written, the message stays on the heap.
+    public void add(String message) {
+        if (spilled == 0 && heldChars + message.length() <= memoryChars) {
+            hold(message);
+            return;
+        }
+        try {
+            if (spill == null) {
+                spill = Files.createTempFile("imclient-backlog", ".tmp");
+                spillOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spill)));
+                spillIn = new DataInputStream(new BufferedInputStream(Files.newInputStream(spill)));
+            }
+            byte[] b = message.getBytes(StandardCharsets.UTF_8);
+            spillOut.writeInt(b.length);
+            spillOut.write(b);
+            spilled++;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to spill the offline backlog to disk", e);
+            hold(message);
+        }
+    }
+
+    // The oldest message not yet shown, or null if there are none.
+    public String next() {
+        if (held.isEmpty() && spilled > 0) {
+            readBack();
+        }
+        String message = held.poll();
+        if (message != null) {
+            heldChars -= message.length();
+        }
+        return message;
+    }
+
+    // Drop every message and delete the spill file.
+    public void clear() {
+        held.clear();
+        heldChars = 0;
+        spilled = 0;
+        closeSpill();
+    }
+
+    private void hold(String message) {
+        held.add(message);
+        heldChars += message.length();
+    }
+
+    // Move spilled messages back onto the heap, up to the limit, deleting the file once it is read out.
+    private void readBack() {
+        try {
+            spillOut.flush();
+            do {
+                byte[] b = new byte[spillIn.readInt()];
+                spillIn.readFully(b);
+                spilled--;
+                hold(new String(b, StandardCharsets.UTF_8));
+            } while (spilled > 0 && heldChars < memoryChars);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to read back the offline backlog; " + spilled + " messages are lost", e);
+            spilled = 0;
+        }
+        if (spilled == 0) {
+            closeSpill();
+        }
+    }
+
+    private void closeSpill() {
+        if (spill == null) {
+            return;
+        }
+        try {
+            spillOut.close();
+            spillIn.close();
+            Files.deleteIfExists(spill);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to delete " + spill, e);
+        }
+        spill = null;
+        spillOut = null;
+        spillIn = null;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BacklogReader parses the offline messages in LOGIN REQUEST=SUCCESS.source.content.source.content...
+ * incrementally, emitting each message to the ServerHandler as soon as it is complete.
+ * Only the field being read is held in memory, capped at MAX_FIELD bytes, so a week-long backlog
+ * costs no more heap than a single message. A field cut at the cap is cut back to the last whole
+ * UTF-8 character.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class BacklogReader implements LineStream {
+    public static final int MAX_FIELD = 64 * 1024;        // Longer message content is truncated to this many bytes.
+
+    private final ServerHandler handler;
+    private final ByteSlice source = new ByteSlice();
+    private int skip;                                    // Bytes of the line prefix still to ignore.
+    private byte[] field = new byte[256];                // Field being read.
+    private int fieldLength;
+    private boolean truncated;                            // Bytes of the field were dropped at MAX_FIELD.
+    private byte[] sourceBytes = new byte[64];            // Source of the message whose content is being read.
+    private int sourceLength;
+    private boolean haveSource;
+    private int count;                                    // Messages emitted for this backlog.
+
+    public BacklogReader(ServerHandler handler) {
+        this.handler = handler;
+    }
+
+    // Prepare for a new backlog. The first skip bytes offered (the line's prefix) are ignored.
+    public BacklogReader start(int skipBytes) {
+        this.skip = skipBytes;
+        this.fieldLength = 0;
+        this.truncated = false;
+        this.haveSource = false;
+        this.count = 0;
+        return this;
+    }
+
+    public void onData(ByteBuffer data) {
+        while (data.hasRemaining()) {
+            accept(data.get());
+        }
+    }
+
+    // Parse a backlog that is already in memory.
+    public void feed(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            accept(b[i]);
+        }
+    }
+
+    public void onEnd() {
+        finish();
+        handler.onLineEnd();
+    }
+
+    // Emit the last message and report how many there were. Trailing empty fields are ignored.
+    public int finish() {
+        endField();
+        if (haveSource && fieldLength > 0) {
+            emit();
+        }
+        haveSource = false;
+        fieldLength = 0;
+        handler.onOfflineMessagesEnd(count);
+        return count;
+    }
+
+    // Take one byte of the line.
+    private void accept(byte b) {
+        if (skip > 0) {
+            skip--;
+            return;
+        }
+        if (b == '\r') {
+            return;
+        }
+        if (b != '.') {
+            if (fieldLength < MAX_FIELD) {
+                if (fieldLength == field.length) {
+                    field = Arrays.copyOf(field, Math.min(field.length * 2, MAX_FIELD));
+                }
+                field[fieldLength++] = b;
+            } else {
+                truncated = true;
+            }
+            return;
+        }
+        endField();
+        if (!haveSource) {
+            // Fields alternate: source, then content.
+            if (fieldLength > sourceBytes.length) {
+                sourceBytes = new byte[fieldLength];
+            }
+            System.arraycopy(field, 0, sourceBytes, 0, fieldLength);
+            sourceLength = fieldLength;
+            haveSource = true;
+            fieldLength = 0;
+            return;
+        }
+        emit();
+    }
+
+    // Cut a truncated field back to a character boundary.
+    private void endField() {
+        if (truncated) {
+            fieldLength = characterBoundary(field, fieldLength);
+            truncated = false;
+        }
+    }
+
+    // The length of the longest prefix of b[0, length) that does not end partway through a UTF-8 character.
+    static int characterBoundary(byte[] b, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int start = length - 1;
+        while (start > 0 && length - start < 4 && (b[start] & 0xc0) == 0x80) {
+            start--;                                    // Back over continuation bytes to the first byte.
+        }
+        int first = b[start] & 0xff;
+        int size = first >= 0xf0 ? 4 : first >= 0xe0 ? 3 : first >= 0xc0 ? 2 : 1;
+        return start + size > length ? start : length;
+    }
+
+    private void emit() {
+        count++;
+        haveSource = false;
+        String content = new String(field, 0, fieldLength, StandardCharsets.UTF_8);
+        fieldLength = 0;
+        handler.onOfflineMessage(source.set(sourceBytes, 0, sourceLength), content);
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * Backoff spaces out reconnect attempts. The delay ceiling doubles after every failed attempt up to
+ * a maximum, and each delay is drawn uniformly between zero and the ceiling ("full jitter"), so
+ * clients that lost the same server at the same moment don't all come back at the same moment.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class Backoff {
+    public static final long DEFAULT_INITIAL_MILLIS = 250;
+    public static final long DEFAULT_MAX_MILLIS = 30_000;
+
+    private final long initialNanos;
+    private final long maxNanos;
+    private final int maxAttempts;            // 0 to keep trying forever.
+    private int attempts;                    // Attempts since the last reset().
+
+    public Backoff() {
+        this(DEFAULT_INITIAL_MILLIS, DEFAULT_MAX_MILLIS, TimeUnit.MILLISECONDS, 0);
+    }
+
+    public Backoff(long initial, long max, TimeUnit unit, int maxAttempts) {
+        if (initial <= 0 || max < initial || maxAttempts < 0) {
+            throw new IllegalArgumentException("initial must be positive, max at least initial and maxAttempts non-negative");
+        }
+        this.initialNanos = unit.toNanos(initial);
+        this.maxNanos = unit.toNanos(max);
+        this.maxAttempts = maxAttempts;
+    }
+
+    // Delay before the next attempt, or -1 once maxAttempts have been made.
+    public long nextDelayNanos() {
+        if (maxAttempts > 0 && attempts >= maxAttempts) {
+            return -1;
+        }
+        // Once doubling would overflow, the ceiling is long past maxNanos anyway.
+        long ceiling = attempts < Long.numberOfLeadingZeros(initialNanos) - 1
+                ? Math.min(maxNanos, initialNanos << attempts)
+                : maxNanos;
+        attempts++;
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    // Call after a successful attempt, so the next outage starts from the initial delay again.
+    public void reset() {
+        attempts = 0;
+    }
+
+    public int attempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,594 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BatchSender runs the client without a console: it logs in, streams a script of commands to the
+ * server as fast as the connection takes them, waits until the server has answered for all of them,
+ * and prints a summary of what was sent and what failed.
+ * <p>
+ * The script is read from a file, or from stdin if the file is "-". Each line is either a command,
+ * <pre>
+ *     /msg [user] [message]
+ *     /add [user]
+ *     /remove [user]
+ * </pre>
+ * or a JSON object such as {"to": "bob", "text": "Build 42 is green."} or {"cmd": "add", "user": "bob"}.
+ * Blank lines and lines starting with '#' are skipped.
+ * <p>
+ * Usage:
+ * <pre>
+ *     java IMClient --batch [script|-] [--host h] [--port p] [--user u] [--password p]
+ *                   [--protocol text|binary]
+ * </pre>
+ * The server, username and password may also come from IMCLIENT_HOST, IMCLIENT_PORT, IMCLIENT_USER
+ * and IMCLIENT_PASSWORD; without a host and port, the servers in config.txt are probed and the
+ * fastest used. The exit status is 0 if everything was sent and nothing failed, 2 if anything
+ * failed and 1 if the client could not log in at all, including when the arguments are invalid.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class BatchSender {
+    public static final int OK = 0;
+    public static final int NOT_LOGGED_IN = 1;
+    public static final int FAILURES = 2;
+
+    private static final long LOGIN_SECONDS = 30;            // Longest wait for the login reply.
+    private static final long SYNC_SECONDS = 120;            // Longest wait for the server to answer the whole script.
+    private static final long EXIT_SECONDS = 5;                // Longest wait for the connection to close after exit().
+    private static final int NAMES_SHOWN = 20;                // Failed users listed in the summary.
+    private static final List<String> OPTIONS =
+            List.of("--batch", "--host", "--port", "--user", "--password", "--protocol");
+    private static final String USAGE = "Usage: java IMClient --batch [script|-] [--host h] [--port p] [--user u]"
+            + " [--password p] [--protocol text|binary]";
+
+    private final CommandTable commands = new CommandTable();
+    private Session session;
+    private int lineNumber;
+    private int sent;                                        // Messages queued for the server.
+    private int rejected;                                    // Messages that could not be queued.
+    private int invalid;                                    // Script lines that are not a valid command.
+    private int adds;
+    private int removes;
+
+    public BatchSender() {
+        commands.register("/msg", this::message)
+                .register("/add", this::addFriend)
+                .register("/remove", this::removeFriend);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.exit(run(args));
+    }
+
+    // Run a batch from the command line arguments and return the exit status.
+    public static int run(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+        if (options == null) {
+            System.err.println(USAGE);
+            return NOT_LOGGED_IN;
+        }
+        String protocol = options.getOrDefault("--protocol", "text");
+        if (!protocol.equals("text") && !protocol.equals("binary")) {
+            System.err.println("Unknown protocol \"" + protocol + "\". Use text or binary.");
+            return NOT_LOGGED_IN;
+        }
+        String script = options.getOrDefault("--batch", "-");
+        String host = option(options, "--host", "IMCLIENT_HOST");
+        String port = option(options, "--port", "IMCLIENT_PORT");
+        String user = option(options, "--user", "IMCLIENT_USER");
+        String password = option(options, "--password", "IMCLIENT_PASSWORD");
+        List<Endpoint> endpoints;
+        if (host != null && port != null) {
+            try {
+                endpoints = List.of(new Endpoint(host.trim(), Integer.parseInt(port.trim())));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid server " + host.trim() + ":" + port.trim() + ".");
+                return NOT_LOGGED_IN;
+            }
+        } else if (EndpointSelector.CONFIG.toFile().canRead()) {
+            // Every server in config.txt, fastest to answer first.
+            try {
+                endpoints = new EndpointSelector(null).order(EndpointSelector.readConfig(EndpointSelector.CONFIG));
+            } catch (IllegalArgumentException | IOException e) {
+                System.err.println("Invalid config.txt: " + e.getMessage());
+                return NOT_LOGGED_IN;
+            }
+        } else {
+            System.err.println("No server given and config.txt not found. Use --host and --port.");
+            return NOT_LOGGED_IN;
+        }
+        if (user == null || password == null) {
+            System.err.println("No credentials given. Use --user and --password, or IMCLIENT_USER and IMCLIENT_PASSWORD.");
+            return NOT_LOGGED_IN;
+        }
+
+        InputStream in;
+        try {
+            in = script.equals("-") ? System.in : new FileInputStream(script);
+        } catch (IOException e) {
+            System.err.println("Unable to read " + script + ": " + e.getMessage());
+            return NOT_LOGGED_IN;
+        }
+        ClientEngine engine = new ClientEngine();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            BatchSender batch = new BatchSender();
+            return batch.run(engine, endpoints, user, password, protocol.equals("binary"), reader);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    // Log in, send every command in script and print the summary. Returns the exit status.
+    // The session is closed before returning, so the engine can be shut down straight after.
+    public int run(ClientEngine engine, List<Endpoint> endpoints, String user, String password, boolean binary,
+                   BufferedReader script) throws IOException {
+        session = new Session(engine);
+        session.setBinaryProtocol(binary);
+        try {
+            return send(endpoints, user, password, script);
+        } finally {
+            close();
+        }
+    }
+
+    private int send(List<Endpoint> endpoints, String user, String password, BufferedReader script) throws IOException {
+        long start = System.nanoTime();
+        try {
+            session.connect(endpoints).get(LOGIN_SECONDS, TimeUnit.SECONDS);
+            session.login(user, password);
+            if (!session.login.get(LOGIN_SECONDS, TimeUnit.SECONDS)) {
+                System.err.println("Login failed for " + user + ".");
+                return NOT_LOGGED_IN;
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Unable to log in to " + session.endpoint() + ": " + e);
+            return NOT_LOGGED_IN;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return NOT_LOGGED_IN;
+        }
+
+        String line;
+        while ((line = script.readLine()) != null && !session.closed().isDone()) {
+            lineNumber++;
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            if (command.startsWith("{")) {
+                json(command);
+            } else if (!commands.dispatch(command)) {
+                invalid("unknown command");
+            }
+        }
+
+        // Everything is queued. Wait until the server has answered for all of it.
+        String incomplete = null;
+        try {
+            session.sync().get(SYNC_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            incomplete = "Connection lost before the server answered for everything sent.";
+        } catch (TimeoutException e) {
+            incomplete = "The server did not answer for everything sent within " + SYNC_SECONDS + " seconds.";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            incomplete = "Interrupted.";
+        }
+        return summary(System.nanoTime() - start, incomplete);
+    }
+
+    // Log out and wait for the server to close the connection. exit() only queues the request.
+    private void close() {
+        if (session.closed().isDone()) {
+            return;
+        }
+        session.exit();
+        try {
+            session.closed().get(EXIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            // Lost or slow to close: shutting the engine down closes it anyway.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // /msg user message
+    private void message(String line, int args) {
+        int space = line.indexOf(' ', args);
+        if (space < 0) {
+            invalid("expected /msg [user] [message]");
+            return;
+        }
+        int start = space + 1;
+        while (start < line.length() && line.charAt(start) <= ' ') {
+            start++;
+        }
+        send(line.substring(args, space), line, start, line.length());
+    }
+
+    private void addFriend(String line, int args) {
+        String name = line.substring(args).trim();
+        if (validName(name)) {
+            session.addFriend(name, 0, name.length());
+            adds++;
+        }
+    }
+
+    private void removeFriend(String line, int args) {
+        String name = line.substring(args).trim();
+        if (validName(name)) {
+            session.removeFriend(name, 0, name.length());
+            removes++;
+        }
+    }
+
+    // {"to": user, "text": message}, or {"cmd": "msg" | "add" | "remove", "user": user, "text": message}.
+    private void json(String line) {
+        Map<String, String> fields;
+        try {
+            fields = parseObject(line);
+        } catch (IllegalArgumentException e) {
+            invalid(e.getMessage());
+            return;
+        }
+        String name = fields.containsKey("to") ? fields.get("to") : fields.get("user");
+        if (name == null) {
+            invalid("no \"to\" or \"user\"");
+            return;
+        }
+        switch (fields.getOrDefault("cmd", "msg")) {
+            case "msg":
+                String text = fields.get("text");
+                if (text == null) {
+                    invalid("no \"text\"");
+                    return;
+                }
+                send(name, text, 0, text.length());
+                break;
+            case "add":
+                addFriend(name, 0);
+                break;
+            case "remove":
+                removeFriend(name, 0);
+                break;
+            default:
+                invalid("unknown \"cmd\"");
+        }
+    }
+
+    private void send(String name, String content, int start, int end) {
+        if (!validName(name)) {
+            return;
+        }
+        if (start == end) {
+            invalid("empty message");
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            char c = content.charAt(i);
+            if (c == '\n' || c == '\r') {
+                invalid("messages cannot contain line breaks");
+                return;
+            }
+        }
+        if (!ChatSession.fits(content, start, end)) {
+            invalid("message longer than " + ChatSession.MAX_CONTENT + " bytes");
+            return;
+        }
+        if (session.sendMessage(name, content, start, end)) {
+            sent++;
+        } else {
+            rejected++;
+        }
+    }
+
+    // User names are letters only.
+    private boolean validName(String name) {
+        if (!Names.valid(name)) {
+            invalid("invalid user name \"" + name + "\"");
+            return false;
+        }
+        return true;
+    }
+
+    private void invalid(String reason) {
+        invalid++;
+        System.err.println("Line " + lineNumber + ": " + reason + ". Skipped.");
+    }
+
+    private int summary(long elapsedNanos, String incomplete) {
+        double seconds = elapsedNanos / 1e9;
+        Session s = session;
+        System.out.printf("Sent:            %,d messages in %.2f s (%,.0f msgs/sec)%n", sent, seconds, sent / Math.max(seconds, 1e-9));
+        System.out.printf("Stored offline:  %,d (delivered when the user signs in)%n", s.storedOffline);
+        System.out.printf("Failed:          %,d no such user, %,d recipient disconnected, %,d not queued%n",
+                s.unknown, s.disconnected, rejected);
+        System.out.printf("Friends:         %,d of %,d added, %,d of %,d removed%n", s.added, adds, s.removed, removes);
+        System.out.printf("Invalid lines:   %,d%n", invalid);
+        printNames("No such user:", s.unknownNames);
+        printNames("Disconnected:", s.disconnectedNames);
+        printNames("Not added:", s.notAdded);
+        if (incomplete != null) {
+            System.out.println(incomplete);
+        }
+        boolean failed = incomplete != null || rejected > 0 || invalid > 0 || s.unknown > 0 || s.disconnected > 0
+                || s.added < adds || s.removed < removes;
+        return failed ? FAILURES : OK;
+    }
+
+    private static void printNames(String label, Map<String, Integer> names) {
+        if (names.isEmpty()) {
+            return;
+        }
+        StringBuilder line = new StringBuilder(String.format("%-17s", label));
+        int shown = 0;
+        for (Map.Entry<String, Integer> entry : names.entrySet()) {
+            if (shown == NAMES_SHOWN) {
+                line.append(" and ").append(names.size() - shown).append(" more");
+                break;
+            }
+            line.append(shown == 0 ? "" : ", ").append(entry.getKey());
+            if (entry.getValue() > 1) {
+                line.append(" (").append(entry.getValue()).append(")");
+            }
+            shown++;
+        }
+        System.out.println(line);
+    }
+
+    // Parse "--option value" pairs. Returns null, having said why, if an argument is not a known option,
+    // an option has no value or is given twice.
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            String name = args[i];
+            if (!OPTIONS.contains(name)) {
+                System.err.println("Unknown option \"" + name + "\".");
+                return null;
+            }
+            if (i + 1 == args.length || OPTIONS.contains(args[i + 1])) {
+                System.err.println("No value for " + name + ".");
+                return null;
+            }
+            if (options.put(name, args[i + 1]) != null) {
+                System.err.println(name + " is given twice.");
+                return null;
+            }
+        }
+        return options;
+    }
+
+    private static String option(Map<String, String> options, String name, String variable) {
+        String value = options.get(name);
+        return value != null ? value : System.getenv(variable);
+    }
+
+    // Parse a flat JSON object. Values may be strings, numbers, booleans or null; all become strings.
+    static Map<String, String> parseObject(String s) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        int[] at = {skipSpace(s, 0)};
+        expect(s, at, '{');
+        if (peek(s, at) == '}') {
+            at[0]++;
+        } else {
+            while (true) {
+                String key = parseString(s, at);
+                expect(s, at, ':');
+                fields.put(key, parseValue(s, at));
+                if (peek(s, at) == ',') {
+                    at[0]++;
+                    continue;
+                }
+                expect(s, at, '}');
+                break;
+            }
+        }
+        if (skipSpace(s, at[0]) != s.length()) {
+            throw new IllegalArgumentException("text after the JSON object");
+        }
+        return fields;
+    }
+
+    private static String parseValue(String s, int[] at) {
+        if (peek(s, at) == '"') {
+            return parseString(s, at);
+        }
+        int start = at[0];
+        while (at[0] < s.length() && ",} \t".indexOf(s.charAt(at[0])) < 0) {
+            at[0]++;
+        }
+        String literal = s.substring(start, at[0]);
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.equals("true") || literal.equals("false") || isNumber(literal)) {
+            return literal;
+        }
+        throw new IllegalArgumentException("invalid JSON value \"" + literal + "\"");
+    }
+
+    // True if s is a number: an optional '-', digits, then optionally a fraction and an exponent.
+    private static boolean isNumber(String s) {
+        int i = s.startsWith("-") ? 1 : 0;
+        int end = digits(s, i);
+        if (end == i) {
+            return false;
+        }
+        if (end < s.length() && s.charAt(end) == '.') {
+            i = end + 1;
+            end = digits(s, i);
+            if (end == i) {
+                return false;
+            }
+        }
+        if (end < s.length() && (s.charAt(end) == 'e' || s.charAt(end) == 'E')) {
+            i = end + 1;
+            if (i < s.length() && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            end = digits(s, i);
+            if (end == i) {
+                return false;
+            }
+        }
+        return end == s.length();
+    }
+
+    // The index of the first character at or after i that is not a digit.
+    private static int digits(String s, int i) {
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private static String parseString(String s, int[] at) {
+        expect(s, at, '"');
+        StringBuilder out = new StringBuilder();
+        int i = at[0];
+        while (true) {
+            if (i >= s.length()) {
+                throw new IllegalArgumentException("unterminated JSON string");
+            }
+            char c = s.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                out.append(c);
+                continue;
+            }
+            if (i >= s.length()) {
+                throw new IllegalArgumentException("unterminated JSON string");
+            }
+            char e = s.charAt(i++);
+            switch (e) {
+                case 'n': out.append('\n'); break;
+                case 't': out.append('\t'); break;
+                case 'r': out.append('\r'); break;
+                case 'b': out.append('\b'); break;
+                case 'f': out.append('\f'); break;
+                case 'u':
+                    if (i + 4 > s.length()) {
+                        throw new IllegalArgumentException("invalid JSON escape");
+                    }
+                    try {
+                        out.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("invalid JSON escape");
+                    }
+                    i += 4;
+                    break;
+                default: out.append(e);        // \" \\ \/
+            }
+        }
+        at[0] = i;
+        return out.toString();
+    }
+
+    private static void expect(String s, int[] at, char c) {
+        if (peek(s, at) != c) {
+            throw new IllegalArgumentException("invalid JSON: expected '" + c + "'");
+        }
+        at[0]++;
+    }
+
+    // The next character that is not white space, or 0 at the end.
+    private static char peek(String s, int[] at) {
+        at[0] = skipSpace(s, at[0]);
+        return at[0] < s.length() ? s.charAt(at[0]) : 0;
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    // Headless session that counts the server's reports instead of printing them.
+    // The counters are only touched by the event loop, and read once sync() has completed.
+    private static final class Session extends ChatSession {
+        final CompletableFuture<Boolean> login = new CompletableFuture<>();
+        final Map<String, Integer> unknownNames = new LinkedHashMap<>();
+        final Map<String, Integer> disconnectedNames = new LinkedHashMap<>();
+        final Map<String, Integer> notAdded = new LinkedHashMap<>();
+        int unknown;
+        int disconnected;
+        int storedOffline;
+        int added;
+        int removed;
+
+        Session(ClientEngine engine) {
+            super(engine);
+        }
+
+        public void onLoginSuccess() {
+            super.onLoginSuccess();
+            login.complete(true);
+        }
+
+        public void onLoginRetry() {
+            super.onLoginRetry();
+            login.complete(false);
+        }
+
+        public void onSendRequestFailed(CharSequence destination) {
+            super.onSendRequestFailed(destination);
+            unknown++;
+            count(unknownNames, destination);
+        }
+
+        public void onUserOffline(CharSequence destination) {
+            super.onUserOffline(destination);
+            storedOffline++;
+        }
+
+        public void onUserDisconnected(CharSequence destination) {
+            super.onUserDisconnected(destination);
+            disconnected++;
+            count(disconnectedNames, destination);
+        }
+
+        public void onAddFriendResult(boolean success, CharSequence name) {
+            super.onAddFriendResult(success, name);
+            if (success) {
+                added++;
+            } else {
+                count(notAdded, name);
+            }
+        }
+
+        public void onRemoveFriendResult(boolean success) {
+            super.onRemoveFriendResult(success);
+            if (success) {
+                removed++;
+            }
+        }
+
+        // Keep a count per user, for the first few thousand users.
+        private static void count(Map<String, Integer> names, CharSequence name) {
+            if (names.size() < 4096 || names.containsKey(name.toString())) {
+                names.merge(name.toString(), 1, Integer::sum);
+            }
+        }
+    }
+}
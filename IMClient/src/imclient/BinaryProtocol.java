@@ -0,0 +1,119 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BinaryProtocol defines the optional binary framing of the IMServer protocol.
+ * <p>
+ * The client offers it by adding a third field to its login, LOGIN REQUEST=username.password.BINARY1.
+ * A server that accepts answers with the text line PROTOCOL SWITCH=BINARY1 and sends frames from then
+ * on; a server that does not simply ignores the field, and both sides keep to text lines. The client
+ * answers the switch with the same line, queued behind any text requests already waiting, and sends
+ * frames after it. Each direction therefore changes format at one line the other side can see.
+ * <p>
+ * A frame is a varint (unsigned LEB128) length, then that many bytes: a one-byte opcode and its payload.
+ * A string field is a varint byte count and UTF-8 bytes, except the last string of a frame, which runs
+ * to the end of the frame. Message content is always last, so it needs neither a length nor escaping.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.nio.ByteBuffer;
+
+public final class BinaryProtocol {
+    public static final String BINARY1 = "BINARY1";                        // Protocol name offered at login.
+    public static final String SWITCH = "PROTOCOL SWITCH=" + BINARY1;    // Last text line in each direction.
+    public static final int MAX_FRAME = 16 * 1024 * 1024;                // Longer frames are a protocol error.
+    public static final int MAX_HEADER = 5;                                // Bytes in the longest int varint.
+
+    // Requests. The login itself is always a text line.
+    public static final int LOGIN = 0x01;                    // username, password
+    public static final int SEND_MESSAGE = 0x02;            // destination, source, content
+    public static final int FRIENDS_LIST = 0x03;            // username
+    public static final int ADD_FRIEND = 0x04;                // username, friend
+    public static final int REMOVE_FRIEND = 0x05;            // username, friend
+    public static final int EXIT = 0x06;                    // username
+
+    // Replies.
+    public static final int LOGIN_RETRY = 0x10;
+    public static final int LOGIN_SUCCESS = 0x11;            // Followed by OFFLINE_MESSAGEs, then OFFLINE_END.
+    public static final int OFFLINE_MESSAGE = 0x12;            // source, content
+    public static final int OFFLINE_END = 0x13;
+    public static final int FRIENDS = 0x14;                    // (name, online byte)... with every name length-prefixed
+    public static final int SEND_REQUEST_FAILED = 0x15;        // destination
+    public static final int USER_OFFLINE = 0x16;            // destination
+    public static final int USER_DISCONNECTED = 0x17;        // destination
+    public static final int INCOMING_MESSAGE = 0x18;        // source, content
+    public static final int ADD_FRIEND_RESULT = 0x19;        // success byte, name (empty on success)
+    public static final int REMOVE_FRIEND_RESULT = 0x1A;    // success byte
+
+    private BinaryProtocol() {
+    }
+
+    // Read a varint at the buffer's position and move past it. Returns -1, leaving the position alone,
+    // if the buffer ends first, or -2 if the varint is longer than an int allows.
+    public static int readVarint(ByteBuffer b) {
+        int start = b.position();
+        int value = 0;
+        for (int i = 0; i < MAX_HEADER; i++) {
+            if (start + i >= b.limit()) {
+                return -1;
+            }
+            int next = b.get(start + i);
+            if (i == MAX_HEADER - 1 && (next & 0xff) > 0x07) {
+                return -2;
+            }
+            value |= (next & 0x7f) << (7 * i);
+            if (next >= 0) {
+                b.position(start + i + 1);
+                return value;
+            }
+        }
+        return -2;
+    }
+
+    // Number of bytes writeVarint uses for value.
+    public static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    // Write value as a varint at b[off]. Returns the offset after it.
+    public static int writeVarint(int value, byte[] b, int off) {
+        while ((value & ~0x7f) != 0) {
+            b[off++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        b[off++] = (byte) value;
+        return off;
+    }
+
+    // The text command a reply opcode stands for, for counting, or null if it stands for none.
+    public static ServerCommand command(int opcode) {
+        switch (opcode) {
+            case LOGIN_RETRY:
+            case LOGIN_SUCCESS:
+                return ServerCommand.LOGIN;
+            case FRIENDS:
+                return ServerCommand.FRIENDS_LIST;
+            case SEND_REQUEST_FAILED:
+                return ServerCommand.SEND_REQUEST_FAILED;
+            case USER_OFFLINE:
+                return ServerCommand.USER_OFFLINE;
+            case USER_DISCONNECTED:
+                return ServerCommand.USER_DISCONNECTED;
+            case INCOMING_MESSAGE:
+                return ServerCommand.INCOMING_MESSAGE;
+            case ADD_FRIEND_RESULT:
+                return ServerCommand.ADD_FRIEND;
+            case REMOVE_FRIEND_RESULT:
+                return ServerCommand.REMOVE_FRIEND;
+            default:
+                return null;
+        }
+    }
+}
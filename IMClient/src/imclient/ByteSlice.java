@@ -0,0 +1,79 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ByteSlice is a reusable CharSequence view over a span of protocol bytes.
+ * The decoder hands these to ServerHandler callbacks instead of allocating a String per field.
+ * A slice is only valid for the duration of the callback; call toString() to keep it.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.nio.charset.StandardCharsets;
+
+public final class ByteSlice implements CharSequence {
+    private byte[] bytes = new byte[0];
+    private int offset;
+    private int length;
+
+    public ByteSlice() {
+    }
+
+    public ByteSlice(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        set(b, 0, b.length);
+    }
+
+    public ByteSlice set(byte[] b, int off, int len) {
+        this.bytes = b;
+        this.offset = off;
+        this.length = len;
+        return this;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    // Usernames and protocol tokens are ASCII, so each byte is one char.
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return (char) (bytes[offset + index] & 0xff);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException(start + ", " + end);
+        }
+        return new ByteSlice().set(bytes, offset + start, end - start);
+    }
+
+    // True if this slice holds exactly the ASCII characters of s.
+    public boolean contentEquals(String s) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[offset + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+}
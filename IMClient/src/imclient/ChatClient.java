@@ -0,0 +1,265 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ChatClient is the client as a library. Every request returns a CompletableFuture completed from the
+ * server's matching reply, and incoming messages are passed to a Listener. Any number of requests may be
+ * in flight at once, from any number of threads: the server answers a connection's requests in order,
+ * so each reply completes the oldest request of its kind still waiting for one.
+ * <p>
+ * Every request but login fails with IllegalStateException until login has succeeded.
+ * <p>
+ * The server doesn't acknowledge a delivered message, only failures. A message's future completes with
+ * SendResult.DELIVERED once the reply to a later request shows the server processed it and reported
+ * nothing. When sending goes quiet, the client asks for the friends list itself so that this happens
+ * promptly; see Outbox. That is one FRIENDS LIST REQUEST per quiet spell, not per message: it is only
+ * sent once no message has been sent for the confirm delay, while some are unconfirmed and no other
+ * reply is on its way to confirm them. The server builds the whole friends list for it, so an account
+ * with a long list that sends in short bursts may want a longer delay; see setConfirmDelay.
+ * <p>
+ * Futures complete and listeners are called on the engine's event loop, so they must not block.
+ * Use the async variants of CompletableFuture's methods for slow work. If the connection is lost,
+ * everything still waiting completes exceptionally, unless reconnect is enabled, in which case
+ * unconfirmed messages are sent again once it is back.
+ * <pre>
+ *     try (ChatClient client = new ChatClient()) {
+ *         client.connect("localhost", 2410).join();
+ *         if (client.login("alice", "secret").join()) {
+ *             client.sendMessage("bob", "Hi!").thenAccept(result -> ...);
+ *         }
+ *     }
+ * </pre>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ChatClient implements AutoCloseable {
+    private final static Logger logger = Logger.getLogger(ChatClient.class.getCanonicalName());
+    public static final long DEFAULT_CONFIRM_MILLIS = 1000;    // Quiet time before sent messages are confirmed.
+    public static final int MAX_UNCONFIRMED = 65536;        // Messages awaiting confirmation before more are held back.
+
+    private final ClientEngine engine;
+    private final boolean ownsEngine;                        // Shut the engine down on close.
+    private final Session session;
+    private volatile Listener listener = (source, content) -> { };
+    private volatile boolean connected;                    // connect() was called.
+    private volatile boolean loggedIn;                    // A login has succeeded.
+
+    // Receives server events that are not replies to requests. Called on the event loop.
+    public interface Listener {
+        // INCOMING UMESSAGE: source sent a message while this client is logged in.
+        void onMessage(String source, String content);
+
+        // A message sent while this account was offline, delivered after logging in.
+        default void onOfflineMessage(String source, String content) {
+            onMessage(source, content);
+        }
+    }
+
+    // A client with an event loop of its own.
+    public ChatClient() throws IOException {
+        this(new ClientEngine(), true);
+    }
+
+    // A client on a shared engine, which is left running on close.
+    public ChatClient(ClientEngine engine) {
+        this(engine, false);
+    }
+
+    private ChatClient(ClientEngine engine, boolean ownsEngine) {
+        this.engine = engine;
+        this.ownsEngine = ownsEngine;
+        this.session = new Session(engine);
+        session.setConfirmDelay(DEFAULT_CONFIRM_MILLIS, TimeUnit.MILLISECONDS);
+        session.setOutboxCapacity(MAX_UNCONFIRMED);
+    }
+
+    public void setListener(Listener l) {
+        listener = l;
+    }
+
+    // How long sending must be quiet before the client asks the server for a reply that confirms sent
+    // messages. Each confirmation costs a FRIENDS LIST REQUEST; a shorter delay completes futures sooner.
+    public void setConfirmDelay(long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be positive");
+        }
+        session.setConfirmDelay(delay, unit);
+    }
+
+    // Reconnect with backoff if the connection is lost after logging in. Call before connecting.
+    public void setReconnect(Backoff b) {
+        session.setReconnect(b);
+    }
+
+    // Offer the server binary framing at login. Call before logging in.
+    public void setBinaryProtocol(boolean offer) {
+        session.setBinaryProtocol(offer);
+    }
+
+    public CompletableFuture<Void> connect(String host, int port) {
+        return connect(List.of(new Endpoint(host, port)));
+    }
+
+    // Connect to the first of endpoints that can be reached.
+    public CompletableFuture<Void> connect(List<Endpoint> endpoints) {
+        connected = true;
+        try {
+            return session.connect(endpoints).thenApply(c -> null);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Completes with true if the server accepted the login. A refused login closes the client.
+    public CompletableFuture<Boolean> login(String user, String password) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (check(result, Names.valid(user) && password.indexOf('\n') < 0, "Invalid username or password")) {
+            session.login(user, password, result);
+        }
+        return result;
+    }
+
+    // Completes once the server has processed the message, with what it did with it. Waits while too
+    // many messages to destination are waiting to be sent; on the event loop such a message fails instead.
+    public CompletableFuture<SendResult> sendMessage(String destination, CharSequence content) {
+        CompletableFuture<SendResult> receipt = new CompletableFuture<>();
+        if (checkLoggedIn(receipt, Names.valid(destination), "Invalid username \"" + destination + "\"")
+                && check(receipt, validContent(content), "Messages must be one line of text")
+                && check(receipt, ChatSession.fits(content, 0, content.length()),
+                         "Messages are limited to " + ChatSession.MAX_CONTENT + " bytes")
+                && !session.sendMessage(destination, content, 0, content.length(), receipt)) {
+            receipt.completeExceptionally(new IOException("Too many messages waiting to be sent"));
+        }
+        return receipt;
+    }
+
+    // Completes with true if the friend was added, false if there is no such user.
+    public CompletableFuture<Boolean> addFriend(String friend) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (checkLoggedIn(result, Names.valid(friend), "Invalid username \"" + friend + "\"")) {
+            session.addFriend(friend, 0, friend.length(), result);
+        }
+        return result;
+    }
+
+    // Completes with true if the friend was removed, false if they were not a friend.
+    public CompletableFuture<Boolean> removeFriend(String friend) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        if (checkLoggedIn(result, Names.valid(friend), "Invalid username \"" + friend + "\"")) {
+            session.removeFriend(friend, 0, friend.length(), result);
+        }
+        return result;
+    }
+
+    // Completes with each friend, online friends first, and whether they are online.
+    public CompletableFuture<Map<String, Boolean>> friends() {
+        CompletableFuture<Map<String, Boolean>> result = new CompletableFuture<>();
+        if (checkLoggedIn(result, true, null)) {
+            session.requestFriends(result);
+        }
+        return result;
+    }
+
+    public String username() {
+        return session.username();
+    }
+
+    // Completes when the client closes; exceptionally if the connection was lost rather than closed.
+    public CompletableFuture<Void> closed() {
+        return session.closed();
+    }
+
+    // Log out if logged in, and close the connection. Requests still waiting complete exceptionally.
+    public void close() {
+        if (connected && !session.closed().isDone()) {
+            if (session.username() != null) {
+                session.exit();
+            } else {
+                session.close();
+            }
+        }
+        if (ownsEngine) {
+            if (connected) {
+                session.closed().whenComplete((v, e) -> engine.shutdown());
+            } else {
+                engine.shutdown();
+            }
+        }
+    }
+
+    // Fail result unless the client is connected and ok holds. Returns true if the request may go ahead.
+    private boolean check(CompletableFuture<?> result, boolean ok, String problem) {
+        if (!connected) {
+            result.completeExceptionally(new IllegalStateException("Not connected; call connect() first"));
+            return false;
+        }
+        if (session.closed().isDone()) {
+            result.completeExceptionally(new IOException("Client closed"));
+            return false;
+        }
+        if (!ok) {
+            result.completeExceptionally(new IllegalArgumentException(problem));
+            return false;
+        }
+        return true;
+    }
+
+    // As check, for requests that need a successful login first.
+    private boolean checkLoggedIn(CompletableFuture<?> result, boolean ok, String problem) {
+        if (connected && !loggedIn) {
+            result.completeExceptionally(new IllegalStateException("Not logged in; call login() first"));
+            return false;
+        }
+        return check(result, ok, problem);
+    }
+
+    private static boolean validContent(CharSequence content) {
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return false;
+            }
+        }
+        return content.length() > 0;
+    }
+
+    // A headless session that passes incoming messages on to the listener.
+    private final class Session extends ChatSession {
+        Session(ClientEngine engine) {
+            super(engine);
+        }
+
+        public void onLoginSuccess() {
+            loggedIn = true;                            // Before the login future completes.
+            super.onLoginSuccess();
+        }
+
+        public void onIncomingMessage(CharSequence source, String content) {
+            super.onIncomingMessage(source, content);
+            try {
+                listener.onMessage(source.toString(), content);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Listener failed on a message from " + source, e);
+            }
+        }
+
+        public void onOfflineMessage(CharSequence source, String content) {
+            super.onOfflineMessage(source, content);
+            try {
+                listener.onOfflineMessage(source.toString(), content);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Listener failed on an offline message from " + source, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,1049 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ChatSession is one logged-in account. It owns the account's connection, its state
+ * (username, prompt, whether input has started) and the handling of server events,
+ * so any number of sessions can share one ClientEngine in the same process.
+ * Server events run on the engine's event loop; console input, if the session has any,
+ * runs on one input thread, which asks for the login and then runs a MessageThread.
+ * <p>
+ * The state both threads change is one immutable SessionState, replaced with compare-and-set, so
+ * neither thread can undo the other's update. Prompts after server events are drawn as they are when
+ * the console writes them, and only the event loop writes to the socket: see ConsoleRenderer and Connection.
+ * <p>
+ * With reconnect enabled, a lost connection doesn't end the session: it reconnects with backoff,
+ * re-sends the cached LOGIN REQUEST and the messages its Outbox hasn't seen confirmed, and the
+ * input thread carries on in the same conversation. Requests that expect a reply are sent from the
+ * event loop only, so their replies can be matched to them in order.
+ * <p>
+ * Messages wait in a PeerScheduler, one queue per recipient, and the connection pulls them a few per
+ * recipient at a time as the socket takes them, so a long paste to one user doesn't hold up the others.
+ * Other requests go first. While reconnecting, messages wait in the scheduler until the login is sent again.
+ * <p>
+ * Each request may be given a future, completed from its matching reply: ChatClient is built on them.
+ * They are completed on the event loop, or exceptionally if the connection is lost before the reply.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+public class ChatSession implements ServerHandler {
+    private final static Logger logger = Logger.getLogger(ChatSession.class.getCanonicalName());
+    private static final int BACKLOG_PAGE = 50;            // Offline messages shown before waiting for /more.
+    private static final long CONFIRM_DELAY_SECONDS = 5;    // Quiet time before asking the server to confirm sent messages.
+    private static final long STABLE_SECONDS = 30;        // A connection up this long resets the reconnect backoff.
+    public static final int MAX_CONTENT = BinaryProtocol.MAX_FRAME - 64 * 1024;    // Message bytes, leaving room for the names.
+    private static final ThreadLocal<RequestEncoder> encoders = ThreadLocal.withInitial(RequestEncoder::new);
+
+    private final ClientEngine engine;
+    private final Scanner input;                        // Console input, or null for a headless session.
+    private final ConsoleRenderer console;                // Where server events are displayed.
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+    private volatile Connection connection;
+    private final CompletableFuture<Connection> opened = new CompletableFuture<>();    // First connection to any endpoint.
+    private volatile List<Endpoint> endpoints = List.of();    // Servers to try, in order.
+    private volatile int endpointIndex;                    // The server connected to, or being tried.
+    private final AtomicReference<SessionState> state = new AtomicReference<>(SessionState.INITIAL);    // Shared with the input thread.
+    private final Supplier<String> promptText = () -> state.get().prompt();    // The prompt as it is when drawn.
+    private volatile Path historyRoot;                    // Where account histories are kept, or null to keep none.
+    private volatile HistoryStore history;                // Opened for the account once it has logged in.
+    private volatile Backoff backoff;                    // Null if a lost connection ends the session.
+    private volatile boolean offerBinary;                // Offer BinaryProtocol framing at login.
+    private volatile Outbox outbox = new Outbox();        // Messages not yet confirmed, if reconnect is enabled or a receipt was asked for.
+    private volatile long confirmDelayNanos = TimeUnit.SECONDS.toNanos(CONFIRM_DELAY_SECONDS);
+    private volatile CompletableFuture<Boolean> loginResult;    // Completed by the reply to the last login(), if asked for.
+    private final AtomicLong sequence = new AtomicLong();    // Orders requests against replies. See Outbox.
+    private final AtomicBoolean confirmScheduled = new AtomicBoolean();
+    private final PeerScheduler<Outgoing> outgoing = new PeerScheduler<>();    // Messages waiting for their turn.
+    private final LineSource feed = new Feed();            // Hands the connection messages from outgoing.
+
+    // Only touched by the event loop.
+    private final PresenceCache presence = new PresenceCache();
+    private final ArrayDeque<Long> awaiting = new ArrayDeque<>();        // Sequence numbers of requests awaiting a reply.
+    private final SendTimes sendTimes = new SendTimes();    // When written messages were sent, to time failure notices.
+    // Add and remove requests still waiting for a reply. The replies come back in request order,
+    // and ADD FRIEND REQUEST=SUCCESS does not repeat the name.
+    private final ArrayDeque<Pending<Boolean>> pendingAdds = new ArrayDeque<>();
+    private final ArrayDeque<Pending<Boolean>> pendingRemoves = new ArrayDeque<>();
+    private final ArrayDeque<Pending<Map<String, Boolean>>> pendingLists = new ArrayDeque<>();    // Requested friends lists.
+    private final ArrayDeque<Long> syncAt = new ArrayDeque<>();            // Reply count at which each sync() completes.
+    private final ArrayDeque<CompletableFuture<Void>> syncs = new ArrayDeque<>();
+    private final ArrayDeque<CompletableFuture<Void>> unsentSyncs = new ArrayDeque<>();    // sync() calls waiting for the scheduler.
+    private boolean exitWhenSent;                        // exit() was called and waits for the scheduler.
+    private boolean outboxFull;                            // The feed holds back messages with receipts until the outbox has room.
+    private long replies;                                // Replies received, counted for sync().
+    private boolean loggedIn;                            // True once a login has succeeded.
+    private boolean relogging;                            // The LOGIN REQUEST after a reconnect is awaiting its reply.
+    private boolean quietLine;                            // The current line shows nothing, so no prompt follows it.
+    private long lostAt;                                // System.nanoTime() when the connection was lost.
+    private boolean firstRun = true;
+    private int offlineShown;                            // Offline messages shown so far in this backlog.
+    private int offlinePageEnd = BACKLOG_PAGE;            // offlineShown at the end of the page being shown.
+    private int offlineCount = -1;                        // Offline messages the server sent, once it has said; -1 before.
+    private final BacklogPages offlinePages = new BacklogPages();    // Offline messages received but not yet shown.
+    private volatile int offlineWaiting;                // offlinePages.size(), for the input thread.
+
+    // Interactive session that reads commands from input and prints to console.
+    public ChatSession(ClientEngine engine, Scanner input, ConsoleRenderer console) {
+        this.engine = engine;
+        this.input = input;
+        this.console = console;
+    }
+
+    // Headless session with no console input and no output.
+    public ChatSession(ClientEngine engine) {
+        this(engine, null, ConsoleRenderer.discard());
+    }
+
+    // Start connecting to the server. Requests sent before the connection completes are queued.
+    public CompletableFuture<Connection> connect(String host, int port) throws IOException {
+        return connect(List.of(new Endpoint(host, port)));
+    }
+
+    // Start connecting to the first of endpoints, moving on to the next whenever one can't be reached.
+    // The same list is worked through, one server per attempt, when reconnecting. Throws if no host resolves.
+    public CompletableFuture<Connection> connect(List<Endpoint> list) throws IOException {
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("No server endpoints");
+        }
+        endpoints = List.copyOf(list);
+        IOException failure = null;
+        for (int i = 0; i < list.size(); i++) {
+            try {
+                open(i);
+                return opened;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    // The server connected to, or being tried.
+    public Endpoint endpoint() {
+        return endpoints.get(endpointIndex);
+    }
+
+    // Start connecting to endpoints[index]. Throws if its host can't be resolved.
+    private Connection open(int index) throws IOException {
+        Endpoint e = endpoints.get(index);
+        Connection c = engine.connect(e.host(), e.port(), new ServerDecoder(this, engine.metrics()));
+        c.setSource(feed);
+        engine.addSource(feed);
+        endpointIndex = index;
+        connection = c;
+        c.connected().thenAccept(opened::complete);
+        return c;
+    }
+
+    // Reconnect with backoff if the connection is lost after logging in. Pass null to end the session instead.
+    public void setReconnect(Backoff b) {
+        backoff = b;
+    }
+
+    // Offer the server binary framing at login. It is used only if the server accepts. Call before logging in.
+    public void setBinaryProtocol(boolean offer) {
+        offerBinary = offer;
+    }
+
+    // True while the connection is lost and a new one is not up yet.
+    public boolean reconnecting() {
+        return state.get().reconnecting();
+    }
+
+    // Completes when the connection closes; exceptionally if it was lost rather than closed.
+    public CompletableFuture<Void> closed() {
+        return closed;
+    }
+
+    public String username() {
+        return state.get().username();
+    }
+
+    // Everything the event loop and the input thread share, as one consistent snapshot.
+    public SessionState state() {
+        return state.get();
+    }
+
+    public ConsoleRenderer console() {
+        return console;
+    }
+
+    // Keep at most capacity messages awaiting confirmation; beyond that the oldest is forgotten. Call before connecting.
+    public void setOutboxCapacity(int capacity) {
+        outbox = new Outbox(capacity);
+    }
+
+    // How long sending must be quiet before sent messages are confirmed with a request of our own.
+    public void setConfirmDelay(long delay, TimeUnit unit) {
+        confirmDelayNanos = unit.toNanos(delay);
+    }
+
+    // Keep message history under root, one directory per account. Call before logging in.
+    public void setHistoryRoot(Path root) {
+        historyRoot = root;
+    }
+
+    // This account's message history, or null if history is not kept.
+    public HistoryStore history() {
+        return history;
+    }
+
+    // Set the console prompt.
+    public void setPrompt(String s) {
+        state.updateAndGet(st -> st.withPrompt(s));
+    }
+
+    // Queue a login request. Its result arrives through onLoginSuccess or onLoginRetry.
+    public boolean login(String user, String password) {
+        return login(user, password, null);
+    }
+
+    // As above, completing result with whether the server accepted the login.
+    public boolean login(String user, String password, CompletableFuture<Boolean> result) {
+        loginResult = result;
+        RequestEncoder encoder = encoders.get();
+        String request = (offerBinary ? encoder.login(user, password, BinaryProtocol.BINARY1) : encoder.login(user, password)).toString();
+        state.updateAndGet(st -> st.loggingIn(user, request));
+        // Wait for a connection, so the request is never lost with a server that turns out to be unreachable.
+        opened.thenRun(() -> engine.execute(() -> sendAwaiting(request)));
+        return true;
+    }
+
+    // Start the session's input thread. It asks for a username and password on the console until the
+    // server accepts them, then reads commands. Call once, after connect().
+    public void startConsole() {
+        Threads.start("input", this::readConsole);
+    }
+
+    private void readConsole() {
+        try {
+            boolean accepted = false;
+            while (!accepted) {
+                CompletableFuture<Boolean> result = new CompletableFuture<>();
+                console.println("\nEnter username:");
+                String u = input.nextLine();
+                console.println("\nEnter password:");
+                String p = input.nextLine();
+                login(u, p, result);
+                accepted = result.join();
+            }
+        } catch (CompletionException | NoSuchElementException e) {
+            return;                                    // The session or the console closed first.
+        }
+        new MessageThread(this, input).run();
+    }
+
+    // True if content[start, end) is short enough to send. Its frame must fit in BinaryProtocol.MAX_FRAME.
+    public static boolean fits(CharSequence content, int start, int end) {
+        return (end - start) * 3L <= MAX_CONTENT || FrameEncoder.utf8Length(content, start, end) <= MAX_CONTENT;
+    }
+
+    public boolean sendMessage(CharSequence destination, CharSequence content) {
+        return sendMessage(destination, content, 0, content.length());
+    }
+
+    // Send content[start, end) to destination.
+    public boolean sendMessage(CharSequence destination, CharSequence content, int start, int end) {
+        return sendMessage(destination, content, start, end, null);
+    }
+
+    // As above, completing receipt once the server has processed the message. Returns false, leaving
+    // receipt alone, if the message could not be queued. Waits while too many messages to destination
+    // are queued, except on the event loop. Content that does not fit() is refused with an exception.
+    public boolean sendMessage(CharSequence destination, CharSequence content, int start, int end,
+                               CompletableFuture<SendResult> receipt) {
+        if (!fits(content, start, end)) {
+            throw new IllegalArgumentException("Messages are limited to " + MAX_CONTENT + " bytes");
+        }
+        String name = destination.toString();
+        Outgoing m = new Outgoing(name, username(), content.subSequence(start, end).toString(), receipt, System.nanoTime());
+        if (!outgoing.add(name, m, !engine.inEventLoop())) {
+            return false;
+        }
+        connection.sourceReady();
+        HistoryStore h = history;
+        if (h != null) {
+            h.append(destination, true, content, start, end, System.currentTimeMillis());
+        }
+        return true;
+    }
+
+    // Queue an add friend request. Problems sending it are reported on the console.
+    public boolean addFriend(CharSequence friend, int start, int end) {
+        return addFriend(friend, start, end, null);
+    }
+
+    // As above, completing result with whether the server added the friend.
+    public boolean addFriend(CharSequence friend, int start, int end, CompletableFuture<Boolean> result) {
+        Pending<Boolean> pending = new Pending<>(friend.subSequence(start, end).toString(), false, result);
+        String request = encoders.get().addFriend(username(), friend, start, end).toString();
+        engine.execute(() -> {
+            if (sendAwaiting(request, result)) {
+                pendingAdds.add(pending);
+            }
+        });
+        return true;
+    }
+
+    public boolean removeFriend(CharSequence friend, int start, int end) {
+        return removeFriend(friend, start, end, null);
+    }
+
+    // As above, completing result with whether the friend was removed, false if it was not a friend.
+    public boolean removeFriend(CharSequence friend, int start, int end, CompletableFuture<Boolean> result) {
+        Pending<Boolean> pending = new Pending<>(friend.subSequence(start, end).toString(), false, result);
+        String request = encoders.get().removeFriend(username(), friend, start, end).toString();
+        engine.execute(() -> {
+            if (sendAwaiting(request, result)) {
+                pendingRemoves.add(pending);
+            }
+        });
+        return true;
+    }
+
+    // Completes once the server has replied to a request queued after everything sent so far. The server
+    // handles requests in order, so by then it has processed them all and reported any that failed.
+    // Completes exceptionally if the connection is lost first.
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        engine.execute(() -> {
+            // Messages still waiting in the scheduler go first.
+            unsentSyncs.add(done);
+            afterSent();
+        });
+        return done;
+    }
+
+    // Event loop only.
+    private void sendSync(CompletableFuture<Void> done) {
+        if (!sendAwaiting(encoders.get().friendsList(username()), done)) {
+            return;
+        }
+        pendingLists.add(new Pending<>(null, false, null));
+        syncAt.add(replies + awaiting.size());
+        syncs.add(done);
+    }
+
+    // Ask the server for the friends list. It is shown when it arrives.
+    public boolean requestFriends() {
+        engine.execute(() -> requestFriendsNow(true));
+        return true;
+    }
+
+    // Ask the server for the friends list without showing it, completing result with each friend and
+    // whether they are online.
+    public boolean requestFriends(CompletableFuture<Map<String, Boolean>> result) {
+        engine.execute(() -> {
+            if (sendAwaiting(encoders.get().friendsList(username()), result)) {
+                pendingLists.add(new Pending<>(null, false, result));
+            }
+        });
+        return true;
+    }
+
+    // Messages to destination still waiting for their turn to be sent.
+    public int queued(String destination) {
+        return outgoing.queued(destination);
+    }
+
+    // Show the friends list, from the presence cache if it is still fresh, otherwise from the server.
+    public void showFriends() {
+        engine.execute(() -> {
+            if (presence.fresh(System.nanoTime())) {
+                printFriends(presence.online(), presence.offline());
+                console.prompt(promptText);
+            } else {
+                requestFriendsNow(true);
+            }
+        });
+    }
+
+    // Tell the server this session is leaving, then close the connection.
+    // Messages already queued are sent first.
+    public void exit() {
+        state.updateAndGet(SessionState::withClosing);
+        engine.execute(() -> {
+            exitWhenSent = true;
+            afterSent();
+        });
+    }
+
+    // Event loop only.
+    private void sendExit() {
+        Connection c = connection;
+        c.send(encoders.get().exit(username()));
+        c.close();
+        closedWhileReconnecting();
+    }
+
+    // Show the next page of offline messages. Returns false if none are waiting.
+    public boolean moreBacklog() {
+        if (offlineWaiting == 0) {
+            return false;
+        }
+        engine.execute(() -> {
+            console.println();
+            showOfflinePage();
+            console.prompt(promptText);
+        });
+        return true;
+    }
+
+    public void close() {
+        state.updateAndGet(SessionState::withClosing);
+        connection.close();
+        engine.execute(this::closedWhileReconnecting);
+    }
+
+    // Send a request that gets a reply, recording it so the reply can be matched. Event loop only.
+    private boolean sendAwaiting(CharSequence request) {
+        return sendAwaiting(request, null);
+    }
+
+    // As above. If the request can't be sent, result is completed exceptionally.
+    private boolean sendAwaiting(CharSequence request, CompletableFuture<?> result) {
+        if (state.get().reconnecting() || closed.isDone()) {
+            console.println("\nError: Not connected to the server. Try again once reconnected.\n");
+            console.prompt(promptText);
+            fail(result, new IOException("Not connected to the server"));
+            return false;
+        }
+        // Numbered before it is queued, so its reply never confirms a message queued after it.
+        long seq = sequence.incrementAndGet();
+        if (!connection.send(request)) {
+            console.println("\nError: Too many requests are waiting to be sent. Try again.\n");
+            console.prompt(promptText);
+            fail(result, new IOException(connection.isClosed() ? "Connection closed" : "Too many requests waiting to be sent"));
+            return false;
+        }
+        awaiting.add(seq);
+        return true;
+    }
+
+    // Event loop only. A quiet request refreshes the presence cache without showing the list.
+    private void requestFriendsNow(boolean show) {
+        if (sendAwaiting(encoders.get().friendsList(username()))) {
+            pendingLists.add(new Pending<>(null, show, null));
+        }
+    }
+
+    // Run allSent() now if nothing is waiting to be sent, otherwise once the feed runs dry. Event loop only.
+    private void afterSent() {
+        if (state.get().reconnecting() || closed.isDone() || outgoing.isEmpty()) {
+            allSent();
+        } else {
+            connection.sourceReady();
+        }
+    }
+
+    // Every message queued so far has been handed to the connection. Event loop only.
+    private void allSent() {
+        CompletableFuture<Void> done;
+        while ((done = unsentSyncs.poll()) != null) {
+            sendSync(done);
+        }
+        if (exitWhenSent) {
+            exitWhenSent = false;
+            sendExit();
+        }
+    }
+
+    // Remember a message about to be written with sequence number seq in the outbox, as a text line, so it
+    // can be re-sent if the connection is lost before it is confirmed. Without reconnect, a lost connection
+    // fails whatever is in the outbox instead. The feed never passes a message with a receipt to a full
+    // outbox. Event loop only, so the outbox is in the order lines are written, and a failure notice
+    // confirms only what was written before the message it names.
+    private void track(Outgoing m, long seq) {
+        Outbox.Entry entry = outbox.add(m.destination, m.line(), m.receipt, m.sentAt);
+        if (entry != null && entry != Outbox.FULL) {
+            outbox.sent(entry, seq);
+        }
+        if (confirmScheduled.compareAndSet(false, true)) {
+            engine.schedule(this::confirmSent, confirmDelayNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Messages were confirmed. If the feed was waiting for room in the outbox, carry on. Event loop only.
+    private void confirmed() {
+        if (outboxFull && !outbox.full()) {
+            outboxFull = false;
+            connection.sourceReady();
+        }
+    }
+
+    // The server doesn't acknowledge messages. If sent messages are still unconfirmed once things are
+    // quiet, ask for the friends list without showing it: its reply confirms everything sent before it.
+    private void confirmSent() {
+        confirmScheduled.set(false);
+        SessionState s = state.get();
+        if (s.closing() || s.reconnecting() || !outbox.hasSent()) {
+            return;
+        }
+        if (!awaiting.isEmpty()) {
+            // A reply is already on its way. Check again after it.
+            if (confirmScheduled.compareAndSet(false, true)) {
+                engine.schedule(this::confirmSent, confirmDelayNanos, TimeUnit.NANOSECONDS);
+            }
+            return;
+        }
+        requestFriendsNow(false);
+    }
+
+    // A reply arrived for the oldest request awaiting one.
+    private void onReply() {
+        Long seq = awaiting.poll();
+        if (seq != null) {
+            outbox.confirmBefore(seq);
+            sendTimes.confirmBefore(seq);
+            confirmed();
+        }
+        replies++;
+        while (!syncAt.isEmpty() && syncAt.peekFirst() <= replies) {
+            syncAt.poll();
+            syncs.poll().complete(null);
+        }
+    }
+
+    // The connection is gone, and with it the replies these requests were waiting for.
+    private void failPending(IOException cause) {
+        IOException e = cause != null ? cause : new IOException("Connection lost");
+        awaiting.clear();
+        sendTimes.clear();
+        syncAt.clear();
+        CompletableFuture<Void> sync;
+        while ((sync = syncs.poll()) != null) {
+            sync.completeExceptionally(e);
+        }
+        while ((sync = unsentSyncs.poll()) != null) {
+            sync.completeExceptionally(e);
+        }
+        for (ArrayDeque<? extends Pending<?>> queue : List.of(pendingAdds, pendingRemoves, pendingLists)) {
+            Pending<?> pending;
+            while ((pending = queue.poll()) != null) {
+                fail(pending.result, e);
+            }
+        }
+    }
+
+    private static void fail(CompletableFuture<?> result, IOException cause) {
+        if (result != null) {
+            result.completeExceptionally(cause);
+        }
+    }
+
+    // Confirm the oldest unconfirmed message to destination, which the server reported on, and time the report.
+    private void onSendReport(CharSequence destination, SendResult result) {
+        String name = destination.toString();
+        outbox.confirmFailed(name, result);
+        confirmed();
+        long sentAt = sendTimes.reported(name);
+        if (sentAt >= 0) {
+            engine.metrics().sendReported(name, System.nanoTime() - sentAt);
+        }
+    }
+
+    // Start or continue reconnecting. Event loop only.
+    private void reconnectLater(IOException cause) {
+        if (!state.getAndUpdate(s -> s.withReconnecting(true)).reconnecting()) {
+            relogging = false;
+            lostAt = System.nanoTime();
+            outbox.hold();
+            // Requests still awaiting replies were lost with the connection.
+            failPending(cause);
+            console.println("\nConnection lost. Reconnecting... Messages you send will be delivered once the connection is back.");
+        }
+        long delay = backoff.nextDelayNanos();
+        if (delay < 0) {
+            console.println("\nUnable to reconnect to the server.");
+            finish(cause != null ? cause : new IOException("Connection lost"));
+            return;
+        }
+        engine.schedule(this::reconnect, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void reconnect() {
+        if (state.get().closing()) {
+            return;
+        }
+        engine.metrics().reconnectAttempt();
+        // The first attempt goes back to the same server; after that, each tries the next one.
+        int index = backoff.attempts() > 1 ? (endpointIndex + 1) % endpoints.size() : endpointIndex;
+        Endpoint e = endpoints.get(index);
+        Connection c;
+        try {
+            c = engine.connect(e.host(), e.port(), new ServerDecoder(this, engine.metrics()));
+            c.setSource(feed);
+        } catch (IOException ex) {
+            endpointIndex = index;
+            reconnectLater(ex);
+            return;
+        }
+        endpointIndex = index;
+        connection = c;
+        // A failed attempt closes c, which brings us back to reconnectLater through onDisconnect.
+        c.connected().thenRun(() -> resume(c));
+    }
+
+    // The new connection is up (on the event loop). Log in again, then re-send unconfirmed messages behind the login.
+    private void resume(Connection c) {
+        if (c != connection) {
+            return;
+        }
+        // Stay reconnecting if exit() or close() got in first: they have already finished the session.
+        SessionState s = state.updateAndGet(st -> st.closing() ? st : st.withReconnecting(false));
+        if (s.closing()) {
+            c.close();
+            return;
+        }
+        relogging = true;
+        sendAwaiting(s.loginRequest());
+        int resent = outbox.release(entry -> {
+            if (!c.send(entry.line)) {
+                return -1;
+            }
+            long seq = sequence.incrementAndGet();
+            sendTimes.sent(entry.destination, seq, entry.sentAt);
+            return seq;
+        });
+        logger.info("Reconnected to " + c.address() + " after " + backoff.attempts() + " attempts; re-sent " + resent + " messages");
+        c.sourceReady();
+    }
+
+    // exit() or close() was called while there was no connection to close.
+    private void closedWhileReconnecting() {
+        if (state.get().reconnecting()) {
+            finish(null);
+        }
+    }
+
+    // The server being tried could not be reached. Returns false if none is left to try.
+    private boolean openNext(IOException cause) {
+        for (int i = endpointIndex + 1; i < endpoints.size(); i++) {
+            logger.info("Unable to connect to " + endpoints.get(i - 1) + " (" + cause + "). Trying " + endpoints.get(i) + ".");
+            try {
+                open(i);
+                return true;
+            } catch (IOException e) {
+                cause = e;
+            }
+        }
+        return false;
+    }
+
+    // The session is over.
+    private void finish(IOException cause) {
+        failPending(cause);
+        IOException e = cause != null ? cause : new IOException("Session closed");
+        outgoing.close(m -> fail(m.receipt, e));
+        engine.removeSource(feed);
+        outbox.fail(e);
+        offlinePages.clear();
+        offlineWaiting = 0;
+        fail(loginResult, e);
+        // The session is closed once the history has written what it holds, without waiting for it here.
+        HistoryStore h = history;
+        history = null;
+        CompletableFuture<Void> historyClosed = h != null ? h.closeAsync() : CompletableFuture.completedFuture(null);
+        historyClosed.whenComplete((v, failure) -> {
+            if (cause != null) {
+                closed.completeExceptionally(cause);
+            } else {
+                closed.complete(null);
+            }
+        });
+    }
+
+    public void onLoginRetry() {
+        onReply();
+        if (relogging) {
+            // The password that worked before was refused. Asking again would fight the input thread for the console.
+            console.println("\nThe server refused the login after reconnecting.");
+            close();
+            return;
+        }
+        // If a login request failed, the input thread asks for another.
+        console.println("\nInvalid login. Try again.");
+        if (loginResult != null) {
+            loginResult.complete(false);
+        }
+        if (input == null) {
+            close();
+        }
+    }
+
+    public void onLoginSuccess() {
+        // If a login request succeeded, ask the server for this user's friends list.
+        // Logged messages follow through onOfflineMessage.
+        onReply();
+        if (relogging) {
+            // Back after a reconnect. The input thread is still running, in the same conversation.
+            relogging = false;
+            engine.metrics().reconnected(username(), backoff.attempts(), System.nanoTime() - lostAt);
+            // Only reset the backoff once the connection has stayed up. Two clients logged in as the
+            // same user keep kicking each other off the server, and must not reconnect at full speed.
+            Connection c = connection;
+            engine.schedule(() -> {
+                if (c == connection && !state.get().reconnecting()) {
+                    backoff.reset();
+                }
+            }, STABLE_SECONDS, TimeUnit.SECONDS);
+            console.println("\nReconnected.\n");
+            int dropped = outbox.takeDropped();
+            if (dropped > 0) {
+                console.println(dropped + " unconfirmed messages were lost while disconnected.\n");
+            }
+            requestFriendsNow(false);
+            return;
+        }
+        loggedIn = true;
+        console.println("You are logged in.\n");
+        requestFriendsNow(true);
+        openHistory();
+
+        // The input thread moves on to commands now, so /more works while the offline messages are paged.
+        if (loginResult != null) {
+            loginResult.complete(true);
+        }
+    }
+
+    // The connection goes on reading while the backlog is paged: messages past the current page
+    // wait in offlinePages until /more asks for them.
+    public void onOfflineMessage(CharSequence source, String content) {
+        record(source, content);
+        String message = source + ": " + content;
+        if (input == null) {
+            showOffline(message);
+        } else if (offlineWaiting > 0 || offlineShown == offlinePageEnd) {
+            if (offlineWaiting == 0) {
+                console.println("Showing " + offlineShown + " messages so far. Enter \"/more\" (without quotes) to see more.");
+            }
+            offlinePages.add(message);
+            offlineWaiting = offlinePages.size();
+        } else {
+            showOffline(message);
+        }
+    }
+
+    public void onOfflineMessagesEnd(int count) {
+        offlineCount = count;
+        if (offlineWaiting == 0) {
+            offlineShownAll();
+        }
+    }
+
+    private void showOffline(String message) {
+        if (offlineShown++ == 0) {
+            console.println("You received messages while offline. Showing them now...\n");
+            console.println("----------------------------------");
+        }
+        console.println(message);
+        console.println("----------------------------------");
+    }
+
+    // Show up to a page of the messages waiting. Event loop only.
+    private void showOfflinePage() {
+        offlinePageEnd = offlineShown + BACKLOG_PAGE;
+        String message;
+        while (offlineShown < offlinePageEnd && (message = offlinePages.next()) != null) {
+            showOffline(message);
+        }
+        offlineWaiting = offlinePages.size();
+        if (offlineWaiting > 0) {
+            console.println("Showing " + offlineShown + " messages so far. Enter \"/more\" (without quotes) to see more.");
+        } else if (offlineCount >= 0) {
+            offlineShownAll();
+        }
+    }
+
+    private void offlineShownAll() {
+        if (offlineCount > 0) {
+            console.println("You received " + offlineCount + " messages while offline.");
+        }
+        offlineCount = -1;
+        offlineShown = 0;
+        offlinePageEnd = BACKLOG_PAGE;
+    }
+
+    public void onFriendsListStart() {
+        presence.beginLoad();
+    }
+
+    public void onFriend(CharSequence name, boolean isOnline) {
+        presence.put(name.toString(), isOnline);
+    }
+
+    public void onFriendsListEnd() {
+        // Show the user's friends list, unless it was only fetched to refresh the cache.
+        onReply();
+        presence.endLoad(System.nanoTime());
+        Pending<Map<String, Boolean>> pending = pendingLists.poll();
+        if (pending != null && pending.result != null) {
+            Map<String, Boolean> friends = new LinkedHashMap<>();
+            for (String name : presence.online()) {
+                friends.put(name, true);
+            }
+            for (String name : presence.offline()) {
+                friends.put(name, false);
+            }
+            pending.result.complete(friends);
+        }
+        if (pending == null || pending.show) {
+            printFriends(presence.online(), presence.offline());
+        } else {
+            quietLine = true;
+        }
+    }
+
+    public void onSendRequestFailed(CharSequence destination) {
+        // If this user sent a message to an invalid destination, it's handled here.
+        onSendReport(destination, SendResult.UNKNOWN_USER);
+        presence.remove(destination.toString());
+        console.println("User " + destination + " does not exist.");
+    }
+
+    public void onUserOffline(CharSequence destination) {
+        // If the destination user of a message is offline, tell this user.
+        onSendReport(destination, SendResult.STORED_OFFLINE);
+        presence.update(destination.toString(), false);
+        console.println("\n" + destination + " is offline. Your message will be delivered when they sign in.");
+    }
+
+    public void onUserDisconnected(CharSequence destination) {
+        // If the target user disconnected during message delivery, tell the client.
+        onSendReport(destination, SendResult.DISCONNECTED);
+        presence.update(destination.toString(), false);
+        console.println("\nUser " + destination + " disconnected during message delivery. Try again.");
+    }
+
+    public void onIncomingMessage(CharSequence source, String content) {
+        // Display the message source and content. The sender must be online.
+        record(source, content);
+        presence.update(source.toString(), true);
+        console.println("\n" + source + ": " + content);
+    }
+
+    public void onAddFriendResult(boolean success, CharSequence name) {
+        onReply();
+        Pending<Boolean> added = pendingAdds.poll();
+        if (added != null && added.result != null) {
+            added.result.complete(success);
+        }
+        if (success) {
+            // The reply doesn't say whether the new friend is online, so refetch on the next lookup.
+            if (added != null) {
+                presence.put(added.name, false);
+            }
+            presence.invalidate();
+            console.println("Friend added.");
+        } else {
+            console.println("User " + name + " does not exist.");
+        }
+    }
+
+    public void onRemoveFriendResult(boolean success) {
+        // Either way, the user is not a friend now.
+        onReply();
+        Pending<Boolean> removed = pendingRemoves.poll();
+        if (removed != null) {
+            presence.remove(removed.name);
+            if (removed.result != null) {
+                removed.result.complete(success);
+            }
+        }
+        if (success) {
+            console.println("Friend removed.");
+        } else {
+            console.println("That user isn't one of your friends.");
+        }
+    }
+
+    public void onUnknown(CharSequence line) {
+        // Handle erroneous messages here.
+        logger.warning("Received invalid command from server: " + line);
+    }
+
+    public void onLineEnd() {
+        if (!firstRun && !quietLine) {
+            console.prompt(promptText);
+        }
+
+        firstRun = false;
+        quietLine = false;
+    }
+
+    public void onDisconnect(IOException cause) {
+        if (!opened.isDone() && !state.get().closing()) {
+            // Never connected. Try the next server, if there is one.
+            if (openNext(cause)) {
+                return;
+            }
+            opened.completeExceptionally(cause != null ? cause : new IOException("Connection closed"));
+        }
+        if (!state.get().closing() && loggedIn && backoff != null) {
+            reconnectLater(cause);
+            return;
+        }
+        finish(cause);
+    }
+
+    // The store maps its files on its own thread; messages recorded meanwhile wait in its queue.
+    // If it fails to open, the session goes on without history.
+    private void openHistory() {
+        Path root = historyRoot;
+        if (root == null || history != null) {
+            return;
+        }
+        String account = username();
+        HistoryStore h = HistoryStore.open(root, account);
+        history = h;
+        h.opened().whenComplete((v, e) -> {
+            if (e != null) {
+                engine.execute(() -> {
+                    logger.warning("Unable to open message history for " + account + ": " + e.getMessage());
+                    if (history == h) {
+                        history = null;
+                    }
+                });
+            }
+        });
+    }
+
+    private void record(CharSequence source, String content) {
+        HistoryStore h = history;
+        if (h != null) {
+            h.append(source, false, content, System.currentTimeMillis());
+        }
+    }
+
+    // Print the friends list. Online users are listed at the top. Offline users are listed at the bottom.
+    private void printFriends(Collection<String> online, Collection<String> offline) {
+        // If both lists are empty, this user hasn't added any friends.
+        if (online.isEmpty() && offline.isEmpty()) {
+            console.println("\nYou haven't added any friends yet.");
+        } else {
+            // Print the online users.
+            console.println("\n\nFRIENDS LIST\n----------------------------------");
+            console.println("ONLINE:");
+            for (String string : online) {
+                console.println(string);
+            }
+            console.println("----------------------------------");
+            // Print the offline users.
+            console.println("OFFLINE:");
+            for (String s : offline) {
+                console.println(s);
+            }
+            console.println("----------------------------------\n");
+        }
+        console.println("\nEnter \"/help\" (without quotes) for a list of commands.\n");
+    }
+
+    // The connection's LineSource: messages from the scheduler, held back while reconnecting. Event loop only.
+    private final class Feed implements LineSource {
+        public String nextLine() {
+            Outgoing m = take();
+            return m == null ? null : m.line();
+        }
+
+        public boolean nextFrame(FrameEncoder frames) {
+            Outgoing m = take();
+            if (m == null) {
+                return false;
+            }
+            frames.begin(BinaryProtocol.SEND_MESSAGE).field(m.destination).field(m.source).rest(m.content).end();
+            return true;
+        }
+
+        // The next message to write, now numbered and tracked, or null if there is none now.
+        private Outgoing take() {
+            if (state.get().reconnecting() || outboxFull) {
+                return null;
+            }
+            Outgoing m = outgoing.peek();
+            if (m == null) {
+                if (!unsentSyncs.isEmpty() || exitWhenSent) {
+                    engine.execute(ChatSession.this::allSent);    // Not from inside the connection's write.
+                }
+                return null;
+            }
+            if (m.receipt != null && outbox.full()) {
+                outboxFull = true;                            // Until confirmations make room: see confirmed().
+                return null;
+            }
+            outgoing.next();
+            long seq = sequence.incrementAndGet();
+            sendTimes.sent(m.destination, seq, m.sentAt);
+            if (backoff != null || m.receipt != null) {
+                track(m, seq);
+            }
+            return m;
+        }
+
+        // A message a producer is still adding counts as none yet: sendMessage calls sourceReady() once
+        // it is in, so the connection can stop watching for OP_WRITE instead of spinning until then.
+        public boolean isEmpty() {
+            return state.get().reconnecting() || outboxFull || outgoing.peek() == null;
+        }
+
+        public int backlog() {
+            return outgoing.size();
+        }
+    }
+
+    // A message waiting in the scheduler. It is encoded only when written: as a frame, or as a text line.
+    private static final class Outgoing {
+        final String destination;
+        final String source;                    // The user it is from.
+        final String content;
+        final CompletableFuture<SendResult> receipt;    // Null if nobody is waiting for the result.
+        final long sentAt;                        // System.nanoTime() when sendMessage was called.
+
+        Outgoing(String destination, String source, String content, CompletableFuture<SendResult> receipt, long sentAt) {
+            this.destination = destination;
+            this.source = source;
+            this.content = content;
+            this.receipt = receipt;
+            this.sentAt = sentAt;
+        }
+
+        // The SEND MESSAGE REQUEST line.
+        String line() {
+            return encoders.get().sendMessage(destination, source, content).toString();
+        }
+    }
+
+    // A request awaiting its reply: the friend it names, whether the friends list it asks for is shown,
+    // and the future its reply completes, if anyone asked for one.
+    private static final class Pending<T> {
+        final String name;
+        final boolean show;
+        final CompletableFuture<T> result;
+
+        Pending(String name, boolean show, CompletableFuture<T> result) {
+            this.name = name;
+            this.show = show;
+            this.result = result;
+        }
+    }
+}
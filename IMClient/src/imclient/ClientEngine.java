@@ -0,0 +1,237 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ClientEngine runs a single selector event loop that drives every Connection opened through it.
+ * One engine can carry any number of connections, so several clients in the same process
+ * share one thread instead of each parking a thread in a blocking read.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ClientEngine implements Runnable {
+    private final static Logger logger = Logger.getLogger(ClientEngine.class.getCanonicalName());
+
+    private static final AtomicInteger engines = new AtomicInteger();
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();    // Work handed to the loop by other threads.
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>();        // Delayed work. Only touched by the loop.
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();    // Open connections, for queue depth.
+    private final Set<LineSource> sources = ConcurrentHashMap.newKeySet();        // Lines not yet queued, for queue depth.
+    private final ClientMetrics metrics = new ClientMetrics(this::queuedLines);
+    private final Thread loop;
+    private volatile boolean running = true;
+
+    public ClientEngine() throws IOException {
+        this.selector = Selector.open();
+        this.loop = new Thread(this, "client-engine");
+        this.loop.setDaemon(true);
+        this.metrics.register("client-engine-" + engines.incrementAndGet());
+        this.loop.start();
+    }
+
+    // Start a non-blocking connect to host:port. Use Connection.connected() to wait for the outcome.
+    public Connection connect(String host, int port, LineListener listener) throws IOException {
+        return connect(host, port, listener, new OutboundQueue());
+    }
+
+    // As above, with the given queue for lines waiting to be written.
+    public Connection connect(String host, int port, LineListener listener, OutboundQueue outbound) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            throw new UnknownHostException(host);
+        }
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(this, channel, address, listener, outbound);
+        connections.add(connection);
+
+        execute(() -> {
+            try {
+                boolean done = channel.connect(address);
+                SelectionKey key = channel.register(selector, done ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connection);
+                connection.register(key);
+                if (done) {
+                    connection.finishConnect();
+                }
+            } catch (IOException e) {
+                connection.closeNow(e);
+            }
+        });
+        return connection;
+    }
+
+    // Run a task on the event loop.
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != loop) {
+            selector.wakeup();
+        }
+    }
+
+    // Run a task on the event loop once delay has passed.
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(delay);
+        execute(() -> timers.add(new Timer(deadline, task)));
+    }
+
+    public ClientMetrics metrics() {
+        return metrics;
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == loop;
+    }
+
+    // Stop the loop and close every connection it owns.
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    public void run() {
+        try {
+            while (running) {
+                // Tasks queued from inside the loop do not wake the selector, so don't block while any are waiting.
+                // Otherwise sleep until the next timer is due.
+                Timer next = timers.peek();
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (next == null) {
+                    selector.select();
+                } else {
+                    long wait = (next.deadline - System.nanoTime() + 999_999) / 1_000_000;    // Round up to whole ms.
+                    if (wait > 0) {
+                        selector.select(wait);
+                    } else {
+                        selector.selectNow();
+                    }
+                }
+                runTasks();
+                runTimers();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isConnectable()) {
+                            connection.finishConnect();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            connection.handleRead();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.handleWrite();
+                        }
+                    } catch (RuntimeException e) {
+                        // A misbehaving listener must not take down every other connection on this loop.
+                        logger.log(Level.WARNING, "Error handling connection to " + connection.address(), e);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            logger.log(Level.SEVERE, "Client engine stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                ((Connection) key.attachment()).closeNow(null);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Nothing left to release.
+            }
+            metrics.unregister();
+        }
+    }
+
+    void closed(Connection connection) {
+        connections.remove(connection);
+    }
+
+    // Count source's backlog in the queue depth until removeSource. It outlives any one connection,
+    // so lines held while reconnecting are still counted. Safe to call from any thread.
+    public void addSource(LineSource source) {
+        sources.add(source);
+    }
+
+    public void removeSource(LineSource source) {
+        sources.remove(source);
+    }
+
+    // Lines waiting to be written, across every open connection and every source feeding one.
+    private long queuedLines() {
+        long total = 0;
+        for (Connection connection : connections) {
+            total += connection.queuedLines();
+        }
+        for (LineSource source : sources) {
+            total += source.backlog();
+        }
+        return total;
+    }
+
+    private void runTimers() {
+        long now = System.nanoTime();
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.deadline - now <= 0) {
+            timers.poll();
+            try {
+                timer.task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Error running client engine timer", e);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Error running client engine task", e);
+            }
+        }
+    }
+
+    private static final class Timer implements Comparable<Timer> {
+        final long deadline;        // System.nanoTime() at which the task is due.
+        final Runnable task;
+
+        Timer(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        public int compareTo(Timer other) {
+            return Long.compare(deadline - other.deadline, 0);
+        }
+    }
+}
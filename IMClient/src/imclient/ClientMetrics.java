@@ -0,0 +1,284 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ClientMetrics counts what a ClientEngine and its sessions do: bytes and lines each way, lines per
+ * server command, how long decoding takes (sampled), how deep the outbound queues are, how long the
+ * server takes to report a failed message, and reconnects. Counters are LongAdders and times go into
+ * LatencyHistograms, so recording costs an increment or two on the event loop.
+ * <p>
+ * The metrics are published as an MXBean (see ClientMetricsMXBean) and to Java Flight Recorder:
+ * an imclient.Metrics snapshot every second, plus an event per reconnect and per failed message.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Timespan;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ClientMetrics implements ClientMetricsMXBean {
+    private final static Logger logger = Logger.getLogger(ClientMetrics.class.getCanonicalName());
+    private static final ServerCommand[] COMMANDS = ServerCommand.values();
+    private static final int UNKNOWN = COMMANDS.length;        // Index of the counter for unrecognized lines.
+
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder linesIn = new LongAdder();
+    private final LongAdder linesOut = new LongAdder();
+    private final LongAdder[] messages = new LongAdder[COMMANDS.length + 1];    // By ServerCommand ordinal.
+    private final LatencyHistogram decodeNanos = new LatencyHistogram();
+    private final LatencyHistogram sendReportNanos = new LatencyHistogram();
+    private final LongAdder reconnectAttempts = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongSupplier queueDepth;
+    private final Runnable snapshot = this::commitSnapshot;
+    private ObjectName name;                                    // Set while registered.
+
+    public ClientMetrics(LongSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new LongAdder();
+        }
+    }
+
+    // Bytes read from or written to a socket.
+    public void read(int bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void written(int bytes) {
+        bytesOut.add(bytes);
+    }
+
+    public void linesIn(int lines) {
+        linesIn.add(lines);
+    }
+
+    public void linesOut(int lines) {
+        linesOut.add(lines);
+    }
+
+    // A line with this command arrived, or an unrecognized one if command is null.
+    public void message(ServerCommand command) {
+        messages[command == null ? UNKNOWN : command.ordinal()].increment();
+    }
+
+    public void decoded(long nanos) {
+        decodeNanos.record(nanos);
+    }
+
+    // The server reported on a message to destination nanos after it was sent.
+    public void sendReported(CharSequence destination, long nanos) {
+        sendReportNanos.record(nanos);
+        SendReportEvent event = new SendReportEvent();
+        if (event.isEnabled()) {
+            event.destination = destination.toString();
+            event.latency = nanos;
+            event.commit();
+        }
+    }
+
+    public void reconnectAttempt() {
+        reconnectAttempts.increment();
+    }
+
+    // A lost session is logged in again, downNanos after the connection was lost.
+    public void reconnected(String username, int attempts, long downNanos) {
+        reconnects.increment();
+        ReconnectEvent event = new ReconnectEvent();
+        if (event.isEnabled()) {
+            event.username = username;
+            event.attempts = attempts;
+            event.downtime = downNanos;
+            event.commit();
+        }
+    }
+
+    // Publish as an MXBean under name, and start the periodic flight recorder snapshot.
+    public void register(String engineName) {
+        try {
+            ObjectName objectName = new ObjectName("imclient:type=ClientEngine,name=" + ObjectName.quote(engineName));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            name = objectName;
+        } catch (JMException e) {
+            logger.log(Level.WARNING, "Unable to register metrics for " + engineName, e);
+        }
+        FlightRecorder.addPeriodicEvent(MetricsEvent.class, snapshot);
+    }
+
+    public void unregister() {
+        FlightRecorder.removePeriodicEvent(snapshot);
+        if (name == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(name);
+        } catch (JMException e) {
+            logger.log(Level.FINE, "Metrics for " + name + " were already unregistered", e);
+        }
+        name = null;
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long getLinesIn() {
+        return linesIn.sum();
+    }
+
+    public long getLinesOut() {
+        return linesOut.sum();
+    }
+
+    public Map<String, Long> getMessageCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (ServerCommand command : COMMANDS) {
+            counts.put(command.name(), messages[command.ordinal()].sum());
+        }
+        counts.put("UNKNOWN", messages[UNKNOWN].sum());
+        return counts;
+    }
+
+    public long getDecodeCount() {
+        return decodeNanos.count();
+    }
+
+    public long getDecodeP50Nanos() {
+        return decodeNanos.percentile(0.50);
+    }
+
+    public long getDecodeP99Nanos() {
+        return decodeNanos.percentile(0.99);
+    }
+
+    public long getDecodeMaxNanos() {
+        return decodeNanos.max();
+    }
+
+    public long getOutboundQueueDepth() {
+        return queueDepth.getAsLong();
+    }
+
+    public long getSendReportCount() {
+        return sendReportNanos.count();
+    }
+
+    public long getSendReportP50Nanos() {
+        return sendReportNanos.percentile(0.50);
+    }
+
+    public long getSendReportP99Nanos() {
+        return sendReportNanos.percentile(0.99);
+    }
+
+    public long getSendReportMaxNanos() {
+        return sendReportNanos.max();
+    }
+
+    public long getReconnectAttempts() {
+        return reconnectAttempts.sum();
+    }
+
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    public void reset() {
+        bytesIn.reset();
+        bytesOut.reset();
+        linesIn.reset();
+        linesOut.reset();
+        for (LongAdder counter : messages) {
+            counter.reset();
+        }
+        decodeNanos.reset();
+        sendReportNanos.reset();
+        reconnectAttempts.reset();
+        reconnects.reset();
+    }
+
+    private void commitSnapshot() {
+        MetricsEvent event = new MetricsEvent();
+        event.engine = name == null ? null : name.getKeyProperty("name");
+        event.bytesIn = getBytesIn();
+        event.bytesOut = getBytesOut();
+        event.linesIn = getLinesIn();
+        event.linesOut = getLinesOut();
+        event.decodeP99 = getDecodeP99Nanos();
+        event.outboundQueueDepth = getOutboundQueueDepth();
+        event.reconnects = getReconnects();
+        event.commit();
+    }
+
+    @Name("imclient.Metrics")
+    @Label("Client Metrics")
+    @Category("IM Client")
+    @Period("1 s")
+    static final class MetricsEvent extends Event {
+        @Label("Engine")
+        String engine;
+        @Label("Bytes In")
+        long bytesIn;
+        @Label("Bytes Out")
+        long bytesOut;
+        @Label("Lines In")
+        long linesIn;
+        @Label("Lines Out")
+        long linesOut;
+        @Label("Decode p99")
+        @Timespan
+        long decodeP99;
+        @Label("Outbound Queue Depth")
+        long outboundQueueDepth;
+        @Label("Reconnects")
+        long reconnects;
+    }
+
+    @Name("imclient.Reconnect")
+    @Label("Reconnect")
+    @Category("IM Client")
+    static final class ReconnectEvent extends Event {
+        @Label("Username")
+        String username;
+        @Label("Attempts")
+        int attempts;
+        @Label("Downtime")
+        @Timespan
+        long downtime;
+    }
+
+    @Name("imclient.SendReport")
+    @Label("Message Not Delivered")
+    @Category("IM Client")
+    static final class SendReportEvent extends Event {
+        @Label("Destination")
+        String destination;
+        @Label("Latency")
+        @Timespan
+        long latency;
+    }
+}
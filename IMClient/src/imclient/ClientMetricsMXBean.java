@@ -0,0 +1,54 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ClientMetricsMXBean is the JMX view of a ClientEngine's metrics, registered as
+ * imclient:type=ClientEngine,name=[engine name]. Times are in nanoseconds.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.util.Map;
+
+public interface ClientMetricsMXBean {
+    long getBytesIn();
+
+    long getBytesOut();
+
+    long getLinesIn();
+
+    long getLinesOut();
+
+    // Lines received per server command. Lines that match no command are counted under "UNKNOWN".
+    Map<String, Long> getMessageCounts();
+
+    // Decode times are sampled: one line or frame in ServerDecoder.DECODE_SAMPLE is timed and counted here.
+    long getDecodeCount();
+
+    long getDecodeP50Nanos();
+
+    long getDecodeP99Nanos();
+
+    long getDecodeMaxNanos();
+
+    // Lines queued for the server on every open connection.
+    long getOutboundQueueDepth();
+
+    // Time from a SEND MESSAGE REQUEST to the failure or disconnect notice for it.
+    long getSendReportCount();
+
+    long getSendReportP50Nanos();
+
+    long getSendReportP99Nanos();
+
+    long getSendReportMaxNanos();
+
+    long getReconnectAttempts();
+
+    long getReconnects();
+
+    // Zero every counter and histogram.
+    void reset();
+}
@@ -0,0 +1,58 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * CommandTable maps user commands such as "/msg" to the code that handles them.
+ * A line is parsed once: the token up to the first space selects the command,
+ * and the handler receives the line with the offset where its arguments begin.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.util.Arrays;
+
+public class CommandTable {
+    public interface Command {
+        // args is the offset in line just past the command and its separating space.
+        void run(String line, int args);
+    }
+
+    private String[] names = new String[8];
+    private Command[] handlers = new Command[8];
+    private int size;
+
+    // Register a command. The name includes the leading '/'.
+    public CommandTable register(String name, Command handler) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            handlers = Arrays.copyOf(handlers, size * 2);
+        }
+        names[size] = name;
+        handlers[size] = handler;
+        size++;
+        return this;
+    }
+
+    // Run the command named by the first token of line. Returns false if no command matches.
+    public boolean dispatch(String line) {
+        int end = line.indexOf(' ');
+        if (end < 0) {
+            end = line.length();
+        }
+        for (int i = 0; i < size; i++) {
+            String name = names[i];
+            if (name.length() == end && line.startsWith(name)) {
+                handlers[i].run(line, Math.min(end + 1, line.length()));
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Every registered command name, in registration order.
+    public String[] names() {
+        return Arrays.copyOf(names, size);
+    }
+}
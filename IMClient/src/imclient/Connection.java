@@ -0,0 +1,479 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * Connection is one non-blocking SocketChannel to the IMServer, driven by a ClientEngine.
+ * Reads land in a direct buffer and are reassembled into lines for the LineListener, or streamed
+ * to a LineStream for lines too long to buffer.
+ * Writes are queued by any thread in an OutboundQueue and drained in batches by the engine; once it
+ * is empty, lines are pulled from the LineSource, if the connection has one.
+ * After switchToBinary the same queues carry BinaryProtocol frames: frames are handed to the listener
+ * straight from the read buffer, queued request lines are framed as they are written, and the
+ * LineSource encodes its own frames.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+public class Connection {
+    private final static Logger logger = Logger.getLogger(Connection.class.getCanonicalName());
+    private static final int BUFFER_SIZE = 16 * 1024;    // Size of the direct read and write buffers.
+    private static final int STREAM_CHECK = 32;            // Partial line length at which the listener may take it as a stream.
+
+    private final ClientEngine engine;                    // Event loop that owns this connection.
+    private final SocketChannel channel;
+    private final LineListener listener;
+    private final InetSocketAddress address;
+    private final CompletableFuture<Connection> connected = new CompletableFuture<>();
+    private final ClientMetrics metrics;
+    private SelectionKey key;
+
+    // Read side. Only touched by the event loop.
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);    // Unprocessed bytes, in fill mode.
+    private byte[] line = new byte[256];                // Partial line carried over between reads.
+    private int lineLength;
+    private boolean streamOffered;                        // startStream was already called for the current line.
+    private LineStream stream;                            // Receives the rest of the current line, if the listener asked.
+    private ByteBuffer streamCarry;                        // Start of the streamed line, buffered before the stream began.
+    private boolean binaryReads;                        // The server sends frames instead of lines.
+    private int frameLength = -1;                        // Length of a frame too long for readBuffer, collected in line[].
+
+    // Write side. Any thread may enqueue; only the event loop encodes and writes.
+    private final OutboundQueue pending;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final AtomicBoolean lingering = new AtomicBoolean();    // Writes wait for a linger timer.
+    private volatile LineSource source;                    // Pulled from once pending is empty, or null.
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private CharBuffer encoding;                        // Line currently being encoded into writeBuffer.
+    private boolean binaryWrites;                        // Queued lines are framed. Set once the switch line is written.
+    private boolean switching;                            // The line being encoded is BinaryProtocol.SWITCH.
+    private final FrameEncoder frames = new FrameEncoder();
+    private int frameOffset;                            // Part of the current frame still to copy into writeBuffer.
+    private int frameRemaining;
+
+    private volatile boolean closed;
+
+    Connection(ClientEngine engine, SocketChannel channel, InetSocketAddress address, LineListener listener, OutboundQueue pending) {
+        this.engine = engine;
+        this.pending = pending;
+        this.channel = channel;
+        this.address = address;
+        this.listener = listener;
+        this.metrics = engine.metrics();
+        this.writeBuffer.flip();
+    }
+
+    // Completes once the TCP connection is established, or exceptionally if it could not be.
+    public CompletableFuture<Connection> connected() {
+        return connected;
+    }
+
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    // Queue a line for the server. The line terminator is added here. Safe to call from any thread.
+    // Returns false if the connection is closed, or the outbound queue was full and its policy rejected the line.
+    public boolean send(CharSequence s) {
+        if (closed) {
+            return false;
+        }
+        String line = s.toString();
+        if (engine.inEventLoop()) {
+            // The event loop is the writer, so it must never wait for room. Write out what it can first.
+            if (!pending.tryOffer(line) && !(flushNow() && pending.tryOffer(line))) {
+                return false;
+            }
+        } else if (!pending.offer(line)) {
+            return false;
+        }
+        scheduleWrite();
+        // A full batch is waiting: write it now rather than sit out the rest of the linger.
+        if (lingering.get() && pending.size() >= pending.maxBatch() && lingering.compareAndSet(true, false)) {
+            engine.execute(this::enableWrites);
+        }
+        return true;
+    }
+
+    // Have the event loop write soon, unless it is already going to.
+    private void scheduleWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            long linger = pending.lingerNanos();
+            if (linger == 0 || pending.size() >= pending.maxBatch()) {
+                engine.execute(this::enableWrites);
+            } else {
+                // Give the rest of a burst a moment to arrive so it goes out in the same write.
+                lingering.set(true);
+                engine.schedule(this::lingerOver, linger, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    // Pull lines from source whenever the outbound queue is empty. Set it before lines are waiting in it.
+    public void setSource(LineSource s) {
+        source = s;
+    }
+
+    // Lines are waiting in the source. Safe to call from any thread.
+    public void sourceReady() {
+        if (!closed) {
+            scheduleWrite();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // The server has switched to binary frames, and the line just passed to the listener was its last.
+    // Frames are read from here on. Requests follow once BinaryProtocol.SWITCH, queued behind any lines
+    // already waiting, has been written; if there is no room to queue it they simply stay text.
+    // Must be called on the event loop, from onLine.
+    public void switchToBinary() {
+        binaryReads = true;
+        send(BinaryProtocol.SWITCH);
+    }
+
+    // Number of lines queued but not yet written.
+    public int queuedLines() {
+        return pending.size();
+    }
+
+    // Write what can be written without waiting, then close the connection. Safe to call from any thread.
+    public void close() {
+        engine.execute(() -> {
+            flushNow();
+            closeNow(null);
+        });
+    }
+
+    void register(SelectionKey k) {
+        this.key = k;
+    }
+
+    // Called by the engine when the non-blocking connect has finished.
+    void finishConnect() {
+        try {
+            channel.finishConnect();
+        } catch (IOException e) {
+            connected.completeExceptionally(e);
+            closeNow(e);
+            return;
+        }
+        // Writes scheduled while connecting found no socket to write to. Start over with whatever is waiting now.
+        writeScheduled.set(false);
+        int ops = SelectionKey.OP_READ;
+        if (!idle() && writeScheduled.compareAndSet(false, true)) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+        connected.complete(this);
+    }
+
+    // Called by the engine when the channel has data to read.
+    void handleRead() {
+        int n;
+        try {
+            n = channel.read(readBuffer);
+        } catch (IOException e) {
+            closeNow(e);
+            return;
+        }
+        if (n < 0) {
+            closeNow(null);
+            return;
+        }
+        metrics.read(n);
+        drain();
+    }
+
+    // Split buffered bytes into lines until they run out.
+    // Anything after the last newline stays in line[] (or goes to the stream) for the next read.
+    private void drain() {
+        readBuffer.flip();
+        int lines = 0;
+        try {
+            while (!closed) {
+                if (binaryReads) {
+                    if (!nextFrame()) {
+                        break;
+                    }
+                    lines++;
+                    continue;
+                }
+                if (stream != null) {
+                    if (!feedStream()) {
+                        break;
+                    }
+                    continue;
+                }
+                if (!readBuffer.hasRemaining()) {
+                    break;
+                }
+                byte b = readBuffer.get();
+                if (b == '\n') {
+                    int len = lineLength;
+                    if (len > 0 && line[len - 1] == '\r') {
+                        len--;
+                    }
+                    lineLength = 0;
+                    streamOffered = false;
+                    lines++;
+                    listener.onLine(this, line, 0, len);
+                } else {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                    if (lineLength == STREAM_CHECK && !streamOffered) {
+                        // Long line: give the listener the chance to consume it as it arrives.
+                        streamOffered = true;
+                        stream = listener.startStream(this, line, 0, lineLength);
+                        if (stream != null) {
+                            streamCarry = ByteBuffer.wrap(Arrays.copyOf(line, lineLength));
+                            lineLength = 0;
+                        }
+                    }
+                }
+            }
+        } finally {
+            readBuffer.compact();
+            metrics.linesIn(lines);
+        }
+    }
+
+    // Hand the listener the next whole frame. Returns false when more must be read from the socket.
+    // Frames that fit in readBuffer are passed in place; longer ones are collected in line[] first.
+    private boolean nextFrame() {
+        if (frameLength < 0) {
+            int start = readBuffer.position();
+            int length = BinaryProtocol.readVarint(readBuffer);
+            if (length == -1) {
+                return false;
+            }
+            if (length < 1 || length > BinaryProtocol.MAX_FRAME) {
+                closeNow(new IOException("Invalid frame length from server: " + length));
+                return false;
+            }
+            if (readBuffer.remaining() >= length) {
+                int limit = readBuffer.limit();
+                int end = readBuffer.position() + length;
+                readBuffer.limit(end);
+                try {
+                    listener.onFrame(this, readBuffer);
+                } finally {
+                    readBuffer.limit(limit);
+                    readBuffer.position(end);
+                }
+                return true;
+            }
+            if (readBuffer.position() - start + length <= readBuffer.capacity()) {
+                readBuffer.position(start);            // The whole frame fits once more is read.
+                return false;
+            }
+            if (line.length < length) {
+                line = Arrays.copyOf(line, length);
+            }
+            frameLength = length;
+            lineLength = 0;
+        }
+        int n = Math.min(readBuffer.remaining(), frameLength - lineLength);
+        readBuffer.get(line, lineLength, n);
+        lineLength += n;
+        if (lineLength < frameLength) {
+            return false;
+        }
+        int length = frameLength;
+        frameLength = -1;
+        lineLength = 0;
+        listener.onFrame(this, ByteBuffer.wrap(line, 0, length));
+        return true;
+    }
+
+    // Hand the stream its next bytes. Returns false when more must be read from the socket.
+    private boolean feedStream() {
+        if (streamCarry != null) {
+            stream.onData(streamCarry);
+            streamCarry = null;
+            return true;
+        }
+        if (!readBuffer.hasRemaining()) {
+            return false;
+        }
+        int limit = readBuffer.limit();
+        int newline = -1;
+        for (int i = readBuffer.position(); i < limit; i++) {
+            if (readBuffer.get(i) == '\n') {
+                newline = i;
+                break;
+            }
+        }
+        int end = newline < 0 ? limit : newline;
+        readBuffer.limit(end);
+        stream.onData(readBuffer);
+        readBuffer.limit(limit);
+        readBuffer.position(end);
+        if (newline >= 0) {
+            readBuffer.position(newline + 1);
+            LineStream finished = stream;
+            stream = null;
+            metrics.linesIn(1);
+            streamOffered = false;
+            finished.onEnd();
+        }
+        return true;
+    }
+
+    // Called by the engine when the channel can accept more bytes.
+    void handleWrite() {
+        try {
+            while (true) {
+                if (writeBuffer.hasRemaining()) {
+                    metrics.written(channel.write(writeBuffer));
+                    if (writeBuffer.hasRemaining()) {
+                        return;                        // Socket buffer is full. Wait for the next OP_WRITE.
+                    }
+                }
+                if (!fillWriteBuffer()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            closeNow(e);
+            return;
+        }
+
+        // Nothing left to write. Stop watching OP_WRITE unless a sender raced in after the queue drained.
+        writeScheduled.set(false);
+        if (idle() || !writeScheduled.compareAndSet(false, true)) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    // Write whatever is queued without waiting for OP_WRITE. Returns false if not connected yet.
+    private boolean flushNow() {
+        if (closed || key == null || !channel.isConnected()) {
+            return false;
+        }
+        handleWrite();
+        return true;
+    }
+
+    // Encode up to maxBatch queued lines, or their frames, into writeBuffer. Returns false if there was nothing to encode.
+    // A queued line with no frame, or a frame over BinaryProtocol.MAX_FRAME, is a bug the server would close on anyway.
+    private boolean fillWriteBuffer() throws IOException {
+        writeBuffer.clear();
+        int batch = 0;
+        while (true) {
+            if (encoding == null && frameRemaining == 0) {
+                if (batch == pending.maxBatch()) {
+                    break;
+                }
+                String next = pending.poll();
+                LineSource s = source;
+                if (binaryWrites) {
+                    if (next != null) {
+                        if (!frames.request(next)) {
+                            throw new IOException("Request has no binary frame: " + next);
+                        }
+                    } else if (s == null || !s.nextFrame(frames)) {
+                        break;
+                    }
+                    if (frames.payloadLength() > BinaryProtocol.MAX_FRAME) {
+                        throw new IOException("Request frame of " + frames.payloadLength() + " bytes is over the limit");
+                    }
+                    frameOffset = frames.offset();
+                    frameRemaining = frames.length();
+                } else {
+                    if (next == null && s != null) {
+                        next = s.nextLine();
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    encoding = CharBuffer.wrap(next);
+                    encoder.reset();
+                    switching = next.equals(BinaryProtocol.SWITCH);
+                }
+            }
+            if (frameRemaining > 0) {
+                int n = Math.min(frameRemaining, writeBuffer.remaining());
+                writeBuffer.put(frames.array(), frameOffset, n);
+                frameOffset += n;
+                frameRemaining -= n;
+                if (frameRemaining > 0) {
+                    break;
+                }
+                batch++;
+                continue;
+            }
+            if (encoding.hasRemaining() && encoder.encode(encoding, writeBuffer, true).isOverflow()) {
+                break;
+            }
+            if (!writeBuffer.hasRemaining()) {
+                break;                                // The terminator goes out with the next buffer.
+            }
+            writeBuffer.put((byte) '\n');
+            // The server reads frames after the switch line, so everything queued behind it is framed.
+            binaryWrites = switching;
+            encoding = null;
+            batch++;
+        }
+        writeBuffer.flip();
+        metrics.linesOut(batch);
+        return writeBuffer.hasRemaining();
+    }
+
+    // Nothing is waiting to be written, in the queue or the source.
+    private boolean idle() {
+        LineSource s = source;
+        return pending.isEmpty() && (s == null || s.isEmpty());
+    }
+
+    private void lingerOver() {
+        lingering.set(false);
+        enableWrites();
+    }
+
+    private void enableWrites() {
+        if (!closed && key != null && channel.isConnected()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    void closeNow(IOException cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // The channel is being discarded anyway.
+        }
+        // Lines never written are dropped. Clearing also wakes any producer blocked on a full queue.
+        pending.clear();
+        engine.closed(this);
+        connected.completeExceptionally(cause != null ? cause : new IOException("Connection closed"));
+        listener.onClose(this, cause);
+    }
+}
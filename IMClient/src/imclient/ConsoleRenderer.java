@@ -0,0 +1,183 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ConsoleRenderer is the only writer to the console. Other threads hand it text and prompts,
+ * which it queues without blocking; its own thread drains everything pending into one frame,
+ * draws the latest prompt requested in that frame once at the end, and writes the frame in a
+ * single write and flush. When messages arrive faster than the console can show them, frames
+ * simply grow, and the event loop never waits on console I/O. If more than MAX_PENDING
+ * characters are waiting, further text is dropped and the next frame says how many lines were lost.
+ * <p>
+ * A prompt may also be given as a Supplier, read only when its frame is written. A thread that redraws
+ * another thread's prompt then can't put back an older prompt that thread has since replaced.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+public class ConsoleRenderer implements AutoCloseable {
+    public static final int MAX_PENDING = 1 << 20;        // Characters queued before text is dropped.
+    private static final long CLOSE_WAIT_MILLIS = 1000;
+
+    private final OutputStream target;                    // Null if output is discarded.
+    private final Charset charset;
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();    // Strings, Prompts and prompt Suppliers, in order.
+    private final AtomicLong pendingChars = new AtomicLong();
+    private final AtomicInteger dropped = new AtomicInteger();            // Lines dropped since the last frame.
+    private final StringBuilder frame = new StringBuilder();            // Only touched by the render thread.
+    private final Thread thread;
+    private volatile boolean closed;
+
+    // Render to out on a new thread.
+    public ConsoleRenderer(OutputStream out) {
+        this(out, Charset.defaultCharset());
+    }
+
+    public ConsoleRenderer(OutputStream out, Charset charset) {
+        this.target = out;
+        this.charset = charset;
+        this.thread = out == null ? null : Threads.start("console-renderer", this::renderLoop);
+    }
+
+    // A renderer that discards everything, for sessions with no console.
+    public static ConsoleRenderer discard() {
+        return new ConsoleRenderer(null, Charset.defaultCharset());
+    }
+
+    public void print(String s) {
+        enqueue(s);
+    }
+
+    public void println(String s) {
+        enqueue(s + System.lineSeparator());
+    }
+
+    public void println() {
+        enqueue(System.lineSeparator());
+    }
+
+    public void format(String format, Object... args) {
+        if (target != null) {
+            enqueue(String.format(format, args));
+        }
+    }
+
+    // Draw prompt after the text of the current frame. Of several prompts in one frame, only the last is drawn.
+    public void prompt(String prompt) {
+        if (target == null || closed) {
+            return;
+        }
+        pending.add(new Prompt(prompt));
+        LockSupport.unpark(thread);
+    }
+
+    // As above, drawing whatever source gives when the frame is written. Nothing is drawn if it gives null.
+    public void prompt(Supplier<String> source) {
+        if (target == null || closed) {
+            return;
+        }
+        pending.add(source);
+        LockSupport.unpark(thread);
+    }
+
+    // Write whatever is pending and stop the render thread.
+    public void close() {
+        if (target == null || closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(CLOSE_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void enqueue(String s) {
+        if (target == null || closed) {
+            return;
+        }
+        if (pendingChars.addAndGet(s.length()) > MAX_PENDING) {
+            pendingChars.addAndGet(-s.length());
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.add(s);
+        LockSupport.unpark(thread);
+    }
+
+    private void renderLoop() {
+        while (true) {
+            if (pending.isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            renderFrame();
+        }
+    }
+
+    // Drain everything queued into one write.
+    private void renderFrame() {
+        frame.setLength(0);
+        int lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            frame.append(System.lineSeparator()).append('[').append(lost).append(" lines not shown]").append(System.lineSeparator());
+        }
+        Object prompt = null;
+        long chars = 0;
+        Object event;
+        while ((event = pending.poll()) != null) {
+            if (event instanceof String) {
+                String s = (String) event;
+                frame.append(s);
+                chars += s.length();
+            } else {
+                prompt = event;
+            }
+        }
+        pendingChars.addAndGet(-chars);
+        if (prompt instanceof Prompt) {
+            frame.append(((Prompt) prompt).text);
+        } else if (prompt != null) {
+            Object text = ((Supplier<?>) prompt).get();
+            if (text != null) {
+                frame.append(text);
+            }
+        }
+        byte[] bytes = frame.toString().getBytes(charset);
+        try {
+            target.write(bytes, 0, bytes.length);
+            target.flush();
+        } catch (IOException e) {
+            // The console is gone; there is nowhere left to report it.
+        }
+        if (frame.capacity() > MAX_PENDING) {
+            frame.setLength(0);
+            frame.trimToSize();
+        }
+    }
+
+    private static final class Prompt {
+        final String text;
+
+        Prompt(String text) {
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * Endpoint is the host and port of one IMServer, written host:port, or [address]:port for IPv6.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public final class Endpoint {
+    private final String host;
+    private final int port;
+
+    public Endpoint(String host, int port) {
+        if (host.isEmpty() || port <= 0 || port > 65535) {
+            throw new IllegalArgumentException("Invalid endpoint " + host + ":" + port);
+        }
+        this.host = host;
+        this.port = port;
+    }
+
+    // Parse host:port or [address]:port.
+    public static Endpoint parse(String s) {
+        String text = s.trim();
+        int colon = text.lastIndexOf(':');
+        if (colon <= 0 || colon == text.length() - 1) {
+            throw new IllegalArgumentException("Expected host:port, not \"" + s + "\"");
+        }
+        String host = text.substring(0, colon);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        try {
+            return new Endpoint(host, Integer.parseInt(text.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected host:port, not \"" + s + "\"");
+        }
+    }
+
+    public String host() {
+        return host;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public boolean equals(Object o) {
+        return o instanceof Endpoint && ((Endpoint) o).host.equals(host) && ((Endpoint) o).port == port;
+    }
+
+    public int hashCode() {
+        return host.hashCode() * 31 + port;
+    }
+
+    public String toString() {
+        return host.indexOf(':') >= 0 ? "[" + host + "]:" + port : host + ":" + port;
+    }
+}
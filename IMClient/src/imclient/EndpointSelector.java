@@ -0,0 +1,221 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * EndpointSelector decides which of several IMServers to connect to, and in what order to fall back.
+ * <p>
+ * Endpoints come from config.txt, one host:port per line. The original two-line form, a host on the
+ * first line and a port on the second, is still read as a single endpoint.
+ * <p>
+ * With more than one endpoint, all of them are looked up and probed at once with a non-blocking TCP
+ * connect, and the first to connect comes first; endpoints that refused or have no address come last. The winner is remembered in a cache
+ * file, and while that is fresh the next start tries it first without probing at all.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class EndpointSelector {
+    private final static Logger logger = Logger.getLogger(EndpointSelector.class.getCanonicalName());
+    public static final Path CONFIG = Paths.get("IMClient", "src", "config.txt");    // The servers, unless told otherwise.
+    public static final long DEFAULT_PROBE_MILLIS = 3000;                        // Longest wait for any endpoint to connect.
+    public static final long DEFAULT_CACHE_MILLIS = TimeUnit.DAYS.toMillis(1);    // How long a remembered winner is trusted.
+
+    private final Path cache;                // Remembers the last endpoint connected to, or null to remember nothing.
+    private final long probeMillis;
+    private final long cacheMillis;
+
+    public EndpointSelector(Path cache) {
+        this(cache, DEFAULT_PROBE_MILLIS, DEFAULT_CACHE_MILLIS);
+    }
+
+    public EndpointSelector(Path cache, long probeMillis, long cacheMillis) {
+        this.cache = cache;
+        this.probeMillis = probeMillis;
+        this.cacheMillis = cacheMillis;
+    }
+
+    // Read the endpoints in a config file. Blank lines and lines starting with '#' are skipped.
+    public static List<Endpoint> readConfig(Path file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        // The original format: host, then port.
+        if (lines.size() == 2 && lines.get(0).indexOf(':') < 0 && lines.get(1).matches("\\d+")) {
+            return List.of(new Endpoint(lines.get(0), Integer.parseInt(lines.get(1))));
+        }
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String line : lines) {
+            endpoints.add(Endpoint.parse(line));
+        }
+        if (endpoints.isEmpty()) {
+            throw new IOException("No server endpoints in " + file);
+        }
+        return endpoints;
+    }
+
+    // The endpoints in the order to try them: the remembered winner if it is fresh, otherwise
+    // the probed order. A single endpoint is returned as it is.
+    public List<Endpoint> order(List<Endpoint> endpoints) {
+        if (endpoints.size() < 2) {
+            return endpoints;
+        }
+        Endpoint remembered = remembered();
+        if (remembered != null && endpoints.contains(remembered)) {
+            return first(remembered, endpoints);
+        }
+        return probe(endpoints);
+    }
+
+    // Probe every endpoint at once. Returns them with the first to connect first and any that
+    // failed last; the rest keep their configured order. Names are looked up in parallel, each on
+    // its own thread, and an endpoint is probed as soon as its address is known, so a slow name
+    // server delays only its own endpoints, and no longer than the probe time.
+    public List<Endpoint> probe(List<Endpoint> endpoints) {
+        LinkedHashSet<Endpoint> failed = new LinkedHashSet<>();
+        Endpoint winner = null;
+        long start = System.nanoTime();
+        try (Selector selector = Selector.open()) {
+            Queue<Map.Entry<Endpoint, InetSocketAddress>> resolved = new ConcurrentLinkedQueue<>();
+            for (Endpoint endpoint : endpoints) {
+                Threads.start("resolve-" + endpoint, () -> {
+                    resolved.add(Map.entry(endpoint, new InetSocketAddress(endpoint.host(), endpoint.port())));
+                    selector.wakeup();
+                });
+            }
+            int pending = endpoints.size();                // Being looked up or connecting.
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(probeMillis);
+            while (winner == null && pending > 0) {
+                Map.Entry<Endpoint, InetSocketAddress> lookup;
+                while (winner == null && (lookup = resolved.poll()) != null) {
+                    Endpoint endpoint = lookup.getKey();
+                    if (lookup.getValue().isUnresolved()) {
+                        failed.add(endpoint);
+                        pending--;
+                        continue;
+                    }
+                    SocketChannel channel = SocketChannel.open();
+                    channel.configureBlocking(false);
+                    try {
+                        if (channel.connect(lookup.getValue())) {
+                            channel.close();            // Connected at once, as loopback can.
+                            winner = endpoint;
+                        } else {
+                            channel.register(selector, SelectionKey.OP_CONNECT, endpoint);
+                        }
+                    } catch (IOException e) {
+                        channel.close();
+                        failed.add(endpoint);
+                        pending--;
+                    }
+                }
+                long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (winner != null || pending == 0 || wait <= 0) {
+                    break;
+                }
+                selector.select(wait);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Endpoint endpoint = (Endpoint) key.attachment();
+                    try {
+                        if (!((SocketChannel) key.channel()).finishConnect()) {
+                            continue;                    // Not yet after all. Keep waiting.
+                        }
+                        if (winner == null) {
+                            winner = endpoint;
+                        }
+                    } catch (IOException e) {
+                        failed.add(endpoint);
+                    }
+                    pending--;
+                    key.cancel();
+                }
+                selector.selectedKeys().clear();
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to probe server endpoints", e);
+            return endpoints;
+        }
+        if (winner != null) {
+            logger.fine("Connected to " + winner + " first, in " + (System.nanoTime() - start) / 1000 + " us");
+        }
+
+        List<Endpoint> ordered = new ArrayList<>(endpoints.size());
+        if (winner != null) {
+            ordered.add(winner);
+        }
+        for (Endpoint endpoint : endpoints) {
+            if (!endpoint.equals(winner) && !failed.contains(endpoint)) {
+                ordered.add(endpoint);
+            }
+        }
+        ordered.addAll(failed);
+        return ordered;
+    }
+
+    // Remember the endpoint a session connected to, for the next start. An endpoint that is already
+    // remembered is left to expire, so the endpoints are probed again now and then.
+    public void remember(Endpoint endpoint) {
+        if (cache == null || endpoint.equals(remembered())) {
+            return;
+        }
+        try {
+            Files.createDirectories(cache.toAbsolutePath().getParent());
+            Files.write(cache, (endpoint + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            logger.log(Level.FINE, "Unable to remember endpoint in " + cache, e);
+        }
+    }
+
+    // The remembered endpoint, or null if there is none or it is too old to trust.
+    private Endpoint remembered() {
+        if (cache == null || !Files.isReadable(cache)) {
+            return null;
+        }
+        try {
+            if (System.currentTimeMillis() - Files.getLastModifiedTime(cache).toMillis() > cacheMillis) {
+                return null;
+            }
+            return Endpoint.parse(new String(Files.readAllBytes(cache), StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static List<Endpoint> first(Endpoint endpoint, List<Endpoint> endpoints) {
+        List<Endpoint> ordered = new ArrayList<>(endpoints.size());
+        ordered.add(endpoint);
+        for (Endpoint other : endpoints) {
+            if (!other.equals(endpoint)) {
+                ordered.add(other);
+            }
+        }
+        return ordered;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * FrameEncoder builds BinaryProtocol frames in a single reusable byte array, encoding UTF-8
+ * straight from the CharSequences it is given. The payload is written after room for the longest
+ * length header, and the header is filled in backwards once the length is known, so nothing is
+ * measured twice except length-prefixed fields. A frame is only valid until the next begin().
+ * An encoder belongs to one thread.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.util.Arrays;
+
+public final class FrameEncoder {
+    private byte[] bytes = new byte[256];
+    private int start;                        // Offset of the frame's length header, once end() is called.
+    private int position;                    // Where the next byte goes.
+
+    // Start a new frame with the given opcode, discarding the previous one.
+    public FrameEncoder begin(int opcode) {
+        position = BinaryProtocol.MAX_HEADER;
+        bytes[position++] = (byte) opcode;
+        return this;
+    }
+
+    public FrameEncoder field(CharSequence s) {
+        return field(s, 0, s.length());
+    }
+
+    // Append s[start, end) as a length-prefixed string.
+    public FrameEncoder field(CharSequence s, int start, int end) {
+        ensure(BinaryProtocol.MAX_HEADER);
+        position = BinaryProtocol.writeVarint(utf8Length(s, start, end), bytes, position);
+        return rest(s, start, end);
+    }
+
+    public FrameEncoder rest(CharSequence s) {
+        return rest(s, 0, s.length());
+    }
+
+    // Append s[start, end) as the frame's last string, which has no length of its own.
+    public FrameEncoder rest(CharSequence s, int start, int end) {
+        ensure((end - start) * 3);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xc0 | c >> 6);
+                bytes[position++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                bytes[position++] = (byte) (0xf0 | cp >> 18);
+                bytes[position++] = (byte) (0x80 | cp >> 12 & 0x3f);
+                bytes[position++] = (byte) (0x80 | cp >> 6 & 0x3f);
+                bytes[position++] = (byte) (0x80 | cp & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                bytes[position++] = '?';        // Unpaired, as String.getBytes would have it.
+            } else {
+                bytes[position++] = (byte) (0xe0 | c >> 12);
+                bytes[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+                bytes[position++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        return this;
+    }
+
+    public FrameEncoder flag(boolean b) {
+        ensure(1);
+        bytes[position++] = (byte) (b ? 1 : 0);
+        return this;
+    }
+
+    // Finish the frame by writing its length in front of it.
+    public FrameEncoder end() {
+        int length = position - BinaryProtocol.MAX_HEADER;
+        start = BinaryProtocol.MAX_HEADER - BinaryProtocol.varintSize(length);
+        BinaryProtocol.writeVarint(length, bytes, start);
+        return this;
+    }
+
+    // The finished frame is array()[offset(), offset() + length()).
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int offset() {
+        return start;
+    }
+
+    public int length() {
+        return position - start;
+    }
+
+    // Bytes in the finished frame after its length header, which BinaryProtocol.MAX_FRAME limits.
+    public int payloadLength() {
+        return position - BinaryProtocol.MAX_HEADER;
+    }
+
+    // Translate a text request line, as built by RequestEncoder, into a finished frame. Only for lines
+    // that had to be built as text anyway, such as re-sent messages; others are framed directly.
+    // Returns false if the line is not a request the binary protocol carries.
+    public boolean request(String line) {
+        if (line.startsWith(RequestEncoder.SEND_MESSAGE)) {
+            return fields(line, RequestEncoder.SEND_MESSAGE.length(), BinaryProtocol.SEND_MESSAGE, 2);
+        }
+        if (line.startsWith(RequestEncoder.FRIENDS_LIST)) {
+            return fields(line, RequestEncoder.FRIENDS_LIST.length(), BinaryProtocol.FRIENDS_LIST, 0);
+        }
+        if (line.startsWith(RequestEncoder.ADD_FRIEND)) {
+            return fields(line, RequestEncoder.ADD_FRIEND.length(), BinaryProtocol.ADD_FRIEND, 1);
+        }
+        if (line.startsWith(RequestEncoder.REMOVE_FRIEND)) {
+            return fields(line, RequestEncoder.REMOVE_FRIEND.length(), BinaryProtocol.REMOVE_FRIEND, 1);
+        }
+        if (line.startsWith(RequestEncoder.EXIT)) {
+            return fields(line, RequestEncoder.EXIT.length(), BinaryProtocol.EXIT, 0);
+        }
+        if (line.startsWith(RequestEncoder.LOGIN)) {
+            return fields(line, RequestEncoder.LOGIN.length(), BinaryProtocol.LOGIN, 1);
+        }
+        return false;
+    }
+
+    // Frame line[from...] as prefixed '.'-separated fields, then the rest of the line.
+    private boolean fields(String line, int from, int opcode, int prefixed) {
+        begin(opcode);
+        for (int i = 0; i < prefixed; i++) {
+            int dot = line.indexOf('.', from);
+            if (dot < 0) {
+                return false;
+            }
+            field(line, from, dot);
+            from = dot + 1;
+        }
+        rest(line, from, line.length());
+        end();
+        return true;
+    }
+
+    // UTF-8 bytes in s[start, end).
+    static int utf8Length(CharSequence s, int start, int end) {
+        int n = end - start;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    i++;
+                    n += 2;            // Four bytes for two chars.
+                } else if (!Character.isSurrogate(c)) {
+                    n += 2;
+                }
+            } else if (c >= 0x80) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void ensure(int more) {
+        if (position + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + more));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * HistoryRecord is one stored message, as returned by HistoryStore lookups.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public final class HistoryRecord {
+    private final String peer;            // The other user in the conversation.
+    private final boolean outgoing;        // True if this account sent the message.
+    private final long timestamp;        // Milliseconds since the epoch.
+    private final String content;
+
+    public HistoryRecord(String peer, boolean outgoing, long timestamp, String content) {
+        this.peer = peer;
+        this.outgoing = outgoing;
+        this.timestamp = timestamp;
+        this.content = content;
+    }
+
+    public String peer() {
+        return peer;
+    }
+
+    public boolean outgoing() {
+        return outgoing;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public String content() {
+        return content;
+    }
+}
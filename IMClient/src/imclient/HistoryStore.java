@@ -0,0 +1,717 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * HistoryStore keeps every message an account sends or receives in an append-only log of
+ * memory-mapped segment files, one directory per account. Message bytes stay in the mapped files;
+ * the heap only holds a per-peer index of record positions (8 bytes per message), rebuilt by
+ * scanning record headers when the store is opened. Full segments are sealed and a new one started.
+ * <p>
+ * The store's own writer thread maps the segments when it starts, then encodes and writes each message
+ * append() queues, so neither opening, appending nor closeAsync() waits on the files; appends made while
+ * the segments are being mapped wait in the queue. Reads wait for the mapping, then work on a snapshot
+ * of the segments taken under a brief lock and scan the mapped bytes without it, so a /search over a
+ * long history doesn't hold up the writer.
+ * <p>
+ * Whenever a segment is sealed, and once when the store is opened, the writer compacts the sealed
+ * segments if a quarter or more of their messages are older than the newest maxPerPeer of their
+ * conversation. Compaction writes the survivors to temporary files and commits the swap with a manifest,
+ * so a crash at any point leaves either the old segments or the new ones; opening finishes an interrupted
+ * swap. The survivors take fresh segment numbers, below the oldest, so no file is ever replaced while
+ * a reader may still have it mapped. An old segment that can't be deleted yet stays listed in the manifest
+ * and is skipped until a later open deletes it.
+ * <p>
+ * Record format: int length, long timestamp, byte direction, short peer length, peer, content.
+ * A length of zero marks the end of the records in a segment.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+public class HistoryStore implements AutoCloseable {
+    private final static Logger logger = Logger.getLogger(HistoryStore.class.getCanonicalName());
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_PER_PEER = 50_000;        // Messages kept per conversation by compaction.
+    private static final int COMPACT_FRACTION = 4;                // Compact once 1/4 of sealed messages can go.
+    private static final long FLUSH_POLL_MILLIS = 100;
+    private static final int HEADER = 4 + 8 + 1 + 2;        // length, timestamp, direction, peer length
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+    private static final String TEMP_PREFIX = "compact-";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MANIFEST = "compact.manifest";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxPerPeer;
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();    // Appends, flushes and the close, in order.
+    private final Thread writer;
+    private final CompletableFuture<Void> opened = new CompletableFuture<>();
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();    // The writer has closed the segments.
+    private volatile boolean closed;
+
+    // Guarded by this. Only the writer thread changes them; readers copy what they need.
+    private final List<Segment> segments = new ArrayList<>();        // Oldest first. The last one takes appends.
+    private final Map<String, PeerIndex> index = new HashMap<>();
+
+    // Only touched by the writer thread.
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);        // Content being encoded for append.
+
+    // Open (or create) the history of account under root, e.g. ~/.imclient/history/alice.
+    public static HistoryStore open(Path root, String account) {
+        return new HistoryStore(root.resolve(account), DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_PER_PEER);
+    }
+
+    // Returns at once; the writer thread maps the segments. See opened().
+    public HistoryStore(Path directory, int segmentSize, int maxPerPeer) {
+        if (segmentSize < 4096) {
+            throw new IllegalArgumentException("segmentSize must be at least 4096 bytes");
+        }
+        if (maxPerPeer <= 0) {
+            throw new IllegalArgumentException("maxPerPeer must be positive");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxPerPeer = maxPerPeer;
+        this.writer = Threads.start("history-" + directory.getFileName(), this::writeLoop);
+    }
+
+    // Completes once the segments are mapped, or exceptionally if they could not be. A store that
+    // failed to open finds nothing and drops appends.
+    public CompletableFuture<Void> opened() {
+        return opened;
+    }
+
+    // Queue a message to be stored. content[start, end) is the message text. Messages stored after close() are dropped.
+    public void append(CharSequence peer, boolean outgoing, CharSequence content, int start, int end, long timestamp) {
+        if (closed) {
+            return;
+        }
+        String name = peer.toString();
+        if (name.length() > Short.MAX_VALUE / 3 && name.getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Peer name too long");
+        }
+        pending.add(new Append(name, outgoing, content.subSequence(start, end).toString(), timestamp));
+        LockSupport.unpark(writer);
+    }
+
+    public void append(CharSequence peer, boolean outgoing, CharSequence content, long timestamp) {
+        append(peer, outgoing, content, 0, content.length(), timestamp);
+    }
+
+    // The last n messages exchanged with peer, oldest first. Messages still queued are not included.
+    public List<HistoryRecord> last(String peer, int n) {
+        awaitOpen();
+        Segment[] view;
+        long[] positions;
+        int from, to;
+        synchronized (this) {
+            PeerIndex p = index.get(peer);
+            if (p == null) {
+                return Collections.emptyList();
+            }
+            view = segments.toArray(new Segment[0]);
+            to = p.size;
+            from = Math.max(0, to - n);
+            positions = Arrays.copyOfRange(p.positions, from, to);
+        }
+        List<HistoryRecord> records = new ArrayList<>(positions.length);
+        for (long position : positions) {
+            records.add(read(view, position));
+        }
+        return records;
+    }
+
+    // Number of messages stored for peer.
+    public int count(String peer) {
+        awaitOpen();
+        synchronized (this) {
+            PeerIndex positions = index.get(peer);
+            return positions == null ? 0 : positions.size;
+        }
+    }
+
+    // Up to limit messages whose content contains text, newest first. If peer is null, all conversations are searched.
+    public List<HistoryRecord> search(String text, String peer, int limit) {
+        awaitOpen();
+        byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+        List<HistoryRecord> found = new ArrayList<>();
+        Segment[] view;
+        int[] ends;
+        long[] positions = null;
+        // Records below each segment's end never change, so they can be scanned once the lock is released.
+        synchronized (this) {
+            view = segments.toArray(new Segment[0]);
+            ends = new int[view.length];
+            for (int s = 0; s < view.length; s++) {
+                ends[s] = view[s].end;
+            }
+            if (peer != null) {
+                PeerIndex p = index.get(peer);
+                positions = p == null ? new long[0] : Arrays.copyOf(p.positions, p.size);
+            }
+        }
+        if (positions != null) {
+            for (int i = positions.length - 1; i >= 0 && found.size() < limit; i--) {
+                if (contains(view, positions[i], needle)) {
+                    found.add(read(view, positions[i]));
+                }
+            }
+            return found;
+        }
+        for (int s = view.length - 1; s >= 0 && found.size() < limit; s--) {
+            Segment segment = view[s];
+            List<Long> matches = new ArrayList<>();
+            for (int off = 0; off < ends[s]; off += 4 + segment.map.getInt(off)) {
+                long position = position(segment.number, off);
+                if (contains(view, position, needle)) {
+                    matches.add(position);
+                }
+            }
+            for (int i = matches.size() - 1; i >= 0 && found.size() < limit; i--) {
+                found.add(read(view, matches.get(i)));
+            }
+        }
+        return found;
+    }
+
+    // Rewrite the sealed segments keeping only the newest maxPerPeer messages of each conversation.
+    // The active segment is left alone. Returns the number of messages removed. Writer thread only,
+    // or before the writer starts.
+    private int compact(int maxPerPeer) throws IOException {
+        List<Segment> old;
+        long[] keep = new long[16];
+        int kept = 0, sealed = 0;
+        synchronized (this) {
+            if (segments.size() < 2) {
+                return 0;
+            }
+            int activeNumber = segments.get(segments.size() - 1).number;
+            old = new ArrayList<>(segments.subList(0, segments.size() - 1));
+
+            // Collect the sealed positions that survive, in log order.
+            for (PeerIndex positions : index.values()) {
+                int first = Math.max(0, positions.size - maxPerPeer);
+                for (int i = 0; i < positions.size; i++) {
+                    long position = positions.positions[i];
+                    if (segmentOf(position) == activeNumber) {
+                        continue;
+                    }
+                    sealed++;
+                    if (i >= first) {
+                        if (kept == keep.length) {
+                            keep = Arrays.copyOf(keep, kept * 2);
+                        }
+                        keep[kept++] = position;
+                    }
+                }
+            }
+        }
+        if (kept == sealed) {
+            return 0;
+        }
+        Arrays.sort(keep, 0, kept);
+
+        // Copy survivors into temporary segments. Sealed segments don't change, so no lock is needed.
+        // The copies are written, not mapped, so nothing holds them open when they are moved into place.
+        Segment[] view = old.toArray(new Segment[0]);
+        List<Path> written = new ArrayList<>();
+        FileChannel out = null;
+        int outEnd = 0;
+        for (int i = 0; i < kept; i++) {
+            Segment from = find(view, segmentOf(keep[i]));
+            int off = offsetOf(keep[i]);
+            int size = 4 + from.map.getInt(off);
+            if (out == null || outEnd + size > segmentSize) {
+                if (out != null) {
+                    out.force(false);
+                    out.close();
+                }
+                Path temp = directory.resolve(TEMP_PREFIX + written.size() + TEMP_SUFFIX);
+                Files.deleteIfExists(temp);
+                written.add(temp);
+                out = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                outEnd = 0;
+            }
+            ByteBuffer record = from.map.slice(off, size);
+            while (record.hasRemaining()) {
+                out.write(record, outEnd + record.position());
+            }
+            outEnd += size;
+        }
+        if (out != null) {
+            out.force(false);
+            out.close();
+        }
+
+        // The survivors take fresh numbers just below the oldest segment, in log order, and the old segments
+        // are deleted. Once the manifest is in place the swap is committed, and opening completes it after a
+        // crash. Old segments a previous swap could not delete are carried over.
+        Path committed = directory.resolve(MANIFEST);
+        StringBuilder manifest = new StringBuilder(Files.exists(committed) ? Files.readString(committed) : "");
+        int first = old.get(0).number - written.size();
+        for (int i = 0; i < written.size(); i++) {
+            manifest.append("move ").append(written.get(i).getFileName()).append(' ').append(fileName(first + i)).append('\n');
+        }
+        for (Segment segment : old) {
+            manifest.append("delete ").append(fileName(segment.number)).append('\n');
+        }
+        writeManifest(manifest.toString());
+
+        synchronized (this) {
+            unmap();
+            load();
+        }
+        return sealed - kept;
+    }
+
+    // Wait until every message appended so far is written, then force the segments to disk.
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        pending.add(done);
+        LockSupport.unpark(writer);
+        // A close() racing with this flush may stop the writer before it sees the request.
+        while (!done.isDone() && writer.isAlive()) {
+            try {
+                done.get(FLUSH_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                // Check the writer again.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Write the messages still queued, then close the segments. Waits for the writer to finish.
+    public void close() {
+        closeAsync();
+        if (Thread.currentThread() != writer) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // As close(), without waiting. The future completes once the writer has closed the segments.
+    public CompletableFuture<Void> closeAsync() {
+        closed = true;
+        LockSupport.unpark(writer);
+        return finished;
+    }
+
+    private void writeLoop() {
+        try {
+            Files.createDirectories(directory);
+            synchronized (this) {
+                load();
+            }
+            opened.complete(null);
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                unmap();
+            }
+            closed = true;
+            opened.completeExceptionally(e);
+        }
+        if (!closed) {
+            compactIfWorthIt();
+        }
+        while (true) {
+            Object event = pending.poll();
+            if (event == null) {
+                if (closed) {
+                    break;
+                }
+                LockSupport.park(this);
+                continue;
+            }
+            if (event instanceof Append) {
+                write((Append) event);
+            } else {
+                force();
+                ((CompletableFuture<?>) event).complete(null);
+            }
+        }
+        synchronized (this) {
+            force();
+            unmap();
+        }
+        // Anyone still waiting on a flush queued after the close.
+        Object event;
+        while ((event = pending.poll()) != null) {
+            if (event instanceof CompletableFuture) {
+                ((CompletableFuture<?>) event).complete(null);
+            }
+        }
+        finished.complete(null);
+    }
+
+    // Wait until the writer has mapped the segments, or failed to.
+    private void awaitOpen() {
+        try {
+            opened.join();
+        } catch (CompletionException e) {
+            // Reads find nothing.
+        }
+    }
+
+    // Write one queued message to the active segment, sealing it first if the message doesn't fit.
+    private void write(Append a) {
+        byte[] peerBytes = a.peer.getBytes(StandardCharsets.UTF_8);
+        if (peerBytes.length > Short.MAX_VALUE) {
+            return;
+        }
+        ByteBuffer body = encode(a.content);
+        // Content that would not fit in an empty segment is truncated.
+        int room = segmentSize - 4 - HEADER - peerBytes.length;
+        if (body.remaining() > room) {
+            body.limit(body.position() + room);
+        }
+        int length = HEADER - 4 + peerBytes.length + body.remaining();
+
+        boolean sealed = false;
+        synchronized (this) {
+            if (segments.isEmpty()) {
+                return;
+            }
+            Segment active = segments.get(segments.size() - 1);
+            if (active.end + 4 + length > segmentSize) {
+                active.map.force();
+                try {
+                    active = createSegment(active.number + 1);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "Unable to start a new history segment in " + directory, e);
+                    return;
+                }
+                sealed = true;
+            }
+            MappedByteBuffer map = active.map;
+            int off = active.end;
+            map.putLong(off + 4, a.timestamp);
+            map.put(off + 12, (byte) (a.outgoing ? 1 : 0));
+            map.putShort(off + 13, (short) peerBytes.length);
+            map.put(off + HEADER, peerBytes);
+            map.put(off + HEADER + peerBytes.length, body, body.position(), body.remaining());
+            // Write the length last so a half-written record is never seen as complete.
+            map.putInt(off, length);
+            active.end = off + 4 + length;
+
+            index.computeIfAbsent(a.peer, p -> new PeerIndex()).add(position(active.number, off));
+        }
+        if (sealed) {
+            compactIfWorthIt();
+        }
+    }
+
+    // Compact if a quarter or more of the sealed messages are beyond maxPerPeer for their conversation.
+    private void compactIfWorthIt() {
+        int removable = 0, total = 0;
+        synchronized (this) {
+            if (segments.size() < 2) {
+                return;
+            }
+            for (PeerIndex positions : index.values()) {
+                removable += Math.max(0, positions.size - maxPerPeer);
+                total += positions.size;
+            }
+        }
+        if (removable == 0 || removable * COMPACT_FRACTION < total) {
+            return;
+        }
+        try {
+            int removed = compact(maxPerPeer);
+            logger.fine("Compacted " + directory + ": removed " + removed + " messages");
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Unable to compact history in " + directory, e);
+        }
+    }
+
+    private void force() {
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.map.force();
+            }
+        }
+    }
+
+    private void unmap() {
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException ignored) {
+                // The mapping stays valid until it is collected.
+            }
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    // Map every segment in the directory and rebuild the index from their record headers.
+    private void load() throws IOException {
+        Set<String> undeleted = recover();
+        List<Integer> numbers = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(PREFIX) && n.endsWith(SUFFIX) && !undeleted.contains(n))
+                    .forEach(n -> numbers.add(Integer.parseInt(n.substring(PREFIX.length(), n.length() - SUFFIX.length()))));
+        }
+        Collections.sort(numbers);
+        for (int number : numbers) {
+            Segment segment = mapSegment(directory.resolve(fileName(number)), number, false);
+            segments.add(segment);
+            // Scan until the zero length that marks the end, or a record that runs off the segment.
+            int off = 0;
+            while (off + HEADER <= segmentSize) {
+                int length = segment.map.getInt(off);
+                if (length < HEADER - 4 || off + 4 + length > segmentSize) {
+                    break;
+                }
+                index.computeIfAbsent(peerAt(segment, off), p -> new PeerIndex()).add(position(number, off));
+                off += 4 + length;
+            }
+            segment.end = off;
+        }
+        if (segments.isEmpty()) {
+            createSegment(0);
+        }
+    }
+
+    // Finish a compaction whose manifest was committed, or throw away one that wasn't. Each step can be
+    // repeated, so a crash during recovery is recovered from the same way. Returns the old segments that
+    // could not be deleted yet; they stay in the manifest for the next open.
+    private Set<String> recover() throws IOException {
+        Set<String> undeleted = new HashSet<>();
+        Path manifest = directory.resolve(MANIFEST);
+        if (Files.exists(manifest)) {
+            StringBuilder left = new StringBuilder();
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                String[] words = line.split(" ");
+                if (words.length == 3 && words[0].equals("move") && Files.exists(directory.resolve(words[1]))) {
+                    Files.move(directory.resolve(words[1]), directory.resolve(words[2]),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } else if (words.length == 2 && words[0].equals("delete")) {
+                    try {
+                        Files.deleteIfExists(directory.resolve(words[1]));
+                    } catch (IOException e) {
+                        // Still mapped by a reader, where the platform refuses to delete mapped files.
+                        undeleted.add(words[1]);
+                        left.append(line).append('\n');
+                    }
+                }
+            }
+            if (left.length() == 0) {
+                Files.delete(manifest);
+            } else {
+                writeManifest(left.toString());
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    Files.delete(p);
+                }
+            }
+        }
+        return undeleted;
+    }
+
+    // Replace the manifest with text, atomically.
+    private void writeManifest(String text) throws IOException {
+        Path temp = directory.resolve(MANIFEST + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Segment createSegment(int number) throws IOException {
+        Segment segment = mapSegment(directory.resolve(fileName(number)), number, true);
+        segments.add(segment);
+        return segment;
+    }
+
+    private Segment mapSegment(Path path, int number, boolean create) throws IOException {
+        FileChannel channel = create
+                ? FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        return new Segment(number, path, channel, map);
+    }
+
+    private ByteBuffer encode(String content) {
+        int max = (int) (content.length() * encoder.maxBytesPerChar());
+        if (scratch.capacity() < max) {
+            scratch = ByteBuffer.allocate(Math.max(max, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(content), scratch, true);
+        encoder.flush(scratch);
+        scratch.flip();
+        return scratch;
+    }
+
+    private static HistoryRecord read(Segment[] view, long position) {
+        Segment segment = find(view, segmentOf(position));
+        int off = offsetOf(position);
+        MappedByteBuffer map = segment.map;
+        int length = map.getInt(off);
+        int peerLength = map.getShort(off + 13);
+        byte[] content = new byte[length - (HEADER - 4) - peerLength];
+        map.get(off + HEADER + peerLength, content);
+        return new HistoryRecord(peerAt(segment, off), map.get(off + 12) == 1, map.getLong(off + 4),
+                new String(content, StandardCharsets.UTF_8));
+    }
+
+    // True if the content of the record at position contains needle. Reads the mapped bytes in place.
+    private static boolean contains(Segment[] view, long position, byte[] needle) {
+        Segment segment = find(view, segmentOf(position));
+        int off = offsetOf(position);
+        MappedByteBuffer map = segment.map;
+        int from = off + HEADER + map.getShort(off + 13);
+        int last = off + 4 + map.getInt(off) - needle.length;
+        if (needle.length == 0) {
+            return true;
+        }
+        for (int i = from; i <= last; i++) {
+            if (map.get(i) != needle[0]) {
+                continue;
+            }
+            int j = 1;
+            while (j < needle.length && map.get(i + j) == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String peerAt(Segment segment, int off) {
+        byte[] peer = new byte[segment.map.getShort(off + 13)];
+        segment.map.get(off + HEADER, peer);
+        return new String(peer, StandardCharsets.UTF_8);
+    }
+
+    private static Segment find(Segment[] view, int number) {
+        // Segment numbers are ascending but may have gaps after compaction.
+        int low = 0, high = view.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int n = view[mid].number;
+            if (n == number) {
+                return view[mid];
+            } else if (n < number) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        throw new IllegalStateException("No history segment " + number);
+    }
+
+    private static String fileName(int number) {
+        return String.format("%s%08d%s", PREFIX, number, SUFFIX);
+    }
+
+    private static long position(int segment, int offset) {
+        return ((long) segment << 32) | offset;
+    }
+
+    private static int segmentOf(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offsetOf(long position) {
+        return (int) position;
+    }
+
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer map;
+        int end;                        // Offset just past the last record. Guarded by the store.
+
+        Segment(int number, Path path, FileChannel channel, MappedByteBuffer map) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.map = map;
+        }
+    }
+
+    // A message waiting for the writer.
+    private static final class Append {
+        final String peer;
+        final boolean outgoing;
+        final String content;
+        final long timestamp;
+
+        Append(String peer, boolean outgoing, String content, long timestamp) {
+            this.peer = peer;
+            this.outgoing = outgoing;
+            this.content = content;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // Positions (segment << 32 | offset) of one conversation's records, oldest first.
+    private static final class PeerIndex {
+        long[] positions = new long[8];
+        int size;
+
+        void add(long position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * IMClient connects to and communicates with the IMServer.
+ * The connection and its state belong to a ChatSession; most user input is retrieved
+ * through the MessageThread class.
+ * <p>
+ * Last Modified: 10/17/2026
+ * Created in Eclipse 4.2.2
+ */
+
+package imclient;
+
+import java.io.*;
+import java.util.*;
+import java.net.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+public class IMClient {
+    private final static Logger logger = Logger.getLogger(IMClient.class.getCanonicalName());
+    // The server connected to last, tried first on the next start.
+    private static final Path ENDPOINT_CACHE = Paths.get(System.getProperty("user.home"), ".imclient", "endpoint");
+
+    public static void main(String[] args) throws IOException {
+        // Headless batch mode: the server, credentials and commands come from arguments, the environment and a script.
+        if (Arrays.asList(args).contains("--batch")) {
+            System.exit(BatchSender.run(args));
+            return;
+        }
+        // Read the configuration file for the servers' addresses and ports.
+        File file = EndpointSelector.CONFIG.toFile();
+        List<Endpoint> endpoints;
+        if (!file.exists() || !file.canRead()) {
+            System.out.println("Unable to locate config.txt. Exiting.");
+            System.exit(1);
+            return;
+        }
+        try {
+            endpoints = EndpointSelector.readConfig(file.toPath());
+        } catch (IllegalArgumentException | IOException e) {
+            // A malformed line, no servers listed or a file that can't be read.
+            System.out.println("Invalid config.txt: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        // Pick a server while the user reads the menu: the last one used if it is recent, otherwise the fastest to answer.
+        EndpointSelector selector = new EndpointSelector(ENDPOINT_CACHE);
+        CompletableFuture<List<Endpoint>> ordered = CompletableFuture.supplyAsync(() -> selector.order(endpoints));
+        // One Scanner serves the menu, the login prompt and the session's input thread.
+        Scanner scan = new Scanner(System.in);
+        // Print the menu and get user selection
+        int userChoice = getUserMenuSelection(scan);
+
+        // If 1, log in. If 2, quit.
+        if (userChoice != 1) {
+            System.exit(0);
+            return;
+        }
+
+        ClientEngine engine = new ClientEngine();
+        // From here on, everything shown on the console goes through one render thread.
+        ConsoleRenderer console = new ConsoleRenderer(System.out);
+        ChatSession session = new ChatSession(engine, scan, console);
+        // Survive server restarts: reconnect, log in again and re-send what may not have arrived.
+        session.setReconnect(new Backoff());
+        // Message history is kept under ~/.imclient/history unless -Dimclient.history names another directory.
+        session.setHistoryRoot(Paths.get(System.getProperty("imclient.history",
+                Paths.get(System.getProperty("user.home"), ".imclient", "history").toString())));
+        // -Dimclient.protocol=binary offers the server binary framing; text lines remain the default.
+        session.setBinaryProtocol("binary".equals(System.getProperty("imclient.protocol")));
+
+        // Get log in information while connecting. The login request is sent once the connection is up.
+        // Servers that can't be reached are passed over for the next.
+        try {
+            CompletableFuture<Connection> connected = session.connect(ordered.join());
+            session.startConsole();
+            connected.get();
+            selector.remember(session.endpoint());
+        } catch (UnknownHostException e) {
+            logger.severe("Could not find any host in " + endpoints);
+            System.exit(1);
+        } catch (IOException | ExecutionException e) {
+            logger.severe("Unable to connect to any of " + endpoints);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+
+        // The engine listens for messages from the server and hands them to the session.
+        try {
+            session.closed().get();
+        } catch (ExecutionException e) {
+            // If for some reason the connection to the server is lost, the client will close.
+            console.close();
+            System.out.println("Connection lost.");
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        engine.shutdown();
+        console.close();
+        System.exit(0);
+    }
+
+    // Print the menu and return a valid user selection.
+    private static int getUserMenuSelection(Scanner scan) {
+        printMenu();
+
+        int choice = scan.nextInt();
+
+        while (choice <= 0 || choice >= 3) {
+            printMenu();
+            choice = scan.nextInt();
+        }
+        // Discard the rest of the line so the login prompt starts on fresh input.
+        scan.nextLine();
+
+        return choice;
+    }
+
+    // Print the client menu.
+    private static void printMenu() {
+        System.out.println("Welcome to IM Client.\n");
+        System.out.println("\tMENU");
+        System.out.println("==========================");
+        System.out.println("1. Log In");
+        System.out.println("2. Quit");
+        System.out.println("==========================");
+        System.out.println("Enter 1 or 2.");
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * LineListener receives the traffic of a Connection once the ClientEngine has
+ * reassembled it into complete lines, or into frames once the listener has switched the connection to
+ * the binary protocol (see Connection.switchToBinary). Callbacks run on the engine's event loop,
+ * so implementations should hand anything slow (such as console input) to another thread.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public interface LineListener {
+    // Called once for every complete line read from the server, without the line terminator.
+    // The array is owned by the connection and is reused as soon as this method returns.
+    void onLine(Connection connection, byte[] line, int off, int len);
+
+    // Called once a line has reached a few dozen bytes without ending. Return a LineStream to receive
+    // prefix and the rest of the line incrementally, or null to have the line buffered and passed to onLine.
+    default LineStream startStream(Connection connection, byte[] prefix, int off, int len) {
+        return null;
+    }
+
+    // Called once for every frame read after switchToBinary. frame's position is at the opcode and its
+    // limit at the end of the frame. The buffer is owned by the connection and only valid until this returns.
+    default void onFrame(Connection connection, ByteBuffer frame) {
+    }
+
+    // Called once when the connection closes. cause is null if the server closed the stream normally.
+    void onClose(Connection connection, IOException cause);
+}
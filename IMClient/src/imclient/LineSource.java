@@ -0,0 +1,33 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * LineSource supplies lines for a Connection to write once its OutboundQueue is empty. The
+ * connection pulls from it only as fast as the socket takes the lines, so whatever waits in the
+ * source can still be reordered, as PeerScheduler does, until the moment it is written.
+ * Once the connection writes BinaryProtocol frames, the source encodes them itself, so a request
+ * is never built as a line only to be parsed back into a frame.
+ * All but backlog() are called on the engine's event loop.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public interface LineSource {
+    // The next line to write, without its terminator, or null if there is none now.
+    String nextLine();
+
+    // After the switch to binary frames, called instead of nextLine: encode the next request into frames,
+    // finished, and return true, or return false if there is none now.
+    boolean nextFrame(FrameEncoder frames);
+
+    // True if nextLine would return null. Once it has been, the owner calls Connection.sourceReady()
+    // when lines are waiting again.
+    boolean isEmpty();
+
+    // Lines waiting in the source, for metrics. Safe to call from any thread.
+    default int backlog() {
+        return 0;
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * LineStream receives the bytes of one long line as they arrive, instead of the Connection
+ * buffering the whole line first. A LineListener returns one from startStream.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.nio.ByteBuffer;
+
+public interface LineStream {
+    // Consume all of data, the next bytes of the line. data never contains the line terminator.
+    void onData(ByteBuffer data);
+
+    // The line terminator has arrived.
+    void onEnd();
+}
@@ -0,0 +1,191 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * LoadGenerator drives many headless ChatSessions that message each other at a target rate
+ * and reports throughput and delivery latency (p50/p99/p99.9). Unless --host is given it starts
+ * a StubServer in the same process, so it runs anywhere without network access.
+ * <p>
+ * Usage: java LoadGenerator [--users 100] [--rate 1000] [--seconds 10] [--warmup 2]
+ *                           [--size 32] [--engines 1] [--protocol text|binary] [--host h --port p]
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LoadGenerator {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final long epoch = System.nanoTime();        // Send times are relative to this so they are never negative.
+    private volatile long measureFrom = Long.MAX_VALUE;    // Messages sent before this, relative to epoch, are warm-up.
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+        int users = Integer.parseInt(options.getOrDefault("--users", "100"));
+        int rate = Integer.parseInt(options.getOrDefault("--rate", "1000"));
+        int seconds = Integer.parseInt(options.getOrDefault("--seconds", "10"));
+        int warmup = Integer.parseInt(options.getOrDefault("--warmup", "2"));
+        int size = Integer.parseInt(options.getOrDefault("--size", "32"));
+        int engines = Integer.parseInt(options.getOrDefault("--engines", "1"));
+        boolean binary = "binary".equals(options.getOrDefault("--protocol", "text"));
+        String host = options.get("--host");
+        int port = Integer.parseInt(options.getOrDefault("--port", "2410"));
+
+        StubServer server = null;
+        if (host == null) {
+            server = new StubServer(0);
+            host = "127.0.0.1";
+            port = server.port();
+        }
+        if (users < 2) {
+            throw new IllegalArgumentException("--users must be at least 2");
+        }
+
+        new LoadGenerator().run(host, port, users, rate, seconds, warmup, size, engines, binary);
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    private void run(String host, int port, int users, int rate, int seconds, int warmup, int size, int engineCount,
+                     boolean binary) throws IOException, InterruptedException {
+        ClientEngine[] engines = new ClientEngine[engineCount];
+        for (int i = 0; i < engineCount; i++) {
+            engines[i] = new ClientEngine();
+        }
+
+        // Log every simulated user in and wait until the server has accepted them all.
+        CountDownLatch loggedIn = new CountDownLatch(users);
+        SimulatedUser[] sessions = new SimulatedUser[users];
+        String[] names = new String[users];
+        for (int i = 0; i < users; i++) {
+            names[i] = name(i);
+            sessions[i] = new SimulatedUser(engines[i % engineCount], loggedIn);
+            sessions[i].setBinaryProtocol(binary);
+            sessions[i].connect(host, port);
+            sessions[i].login(names[i], "load");
+        }
+        if (!loggedIn.await(30, TimeUnit.SECONDS)) {
+            System.out.println("Only " + (users - loggedIn.getCount()) + " of " + users + " users logged in. Giving up.");
+            System.exit(1);
+        }
+        System.out.println(users + " users logged in. Sending " + rate + " msgs/sec for " + seconds
+                + "s after " + warmup + "s of warm-up.");
+
+        String padding = size > 20 ? "x".repeat(size - 20) : "";
+        long start = System.nanoTime();
+        long warmupEnd = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+        measureFrom = warmupEnd - epoch;
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long lastSent = 0, lastReceived = 0;
+        long issued = 0;
+        boolean measuring = false;
+        int sender = 0;
+
+        // Pace sends against the clock so the offered rate holds even if a tick runs late.
+        while (true) {
+            long now = System.nanoTime();
+            if (now - end >= 0) {
+                break;
+            }
+            if (!measuring && now - warmupEnd >= 0) {
+                latency.reset();
+                sent.reset();
+                received.reset();
+                failed.reset();
+                lastSent = lastReceived = 0;
+                measuring = true;
+            }
+            long due = (now - start) * rate / TimeUnit.SECONDS.toNanos(1);
+            for (; issued < due; issued++) {
+                int destination = (sender + 1 + ThreadLocalRandom.current().nextInt(users - 1)) % users;
+                // The content carries its send time so the receiver can measure delivery latency.
+                if (sessions[sender].sendMessage(names[destination], "t" + (System.nanoTime() - epoch) + padding)) {
+                    sent.increment();
+                } else {
+                    failed.increment();
+                }
+                sender = (sender + 1) % users;
+            }
+            if (now - nextReport >= 0) {
+                long s = sent.sum(), r = received.sum();
+                System.out.printf("%s sent %,d/s  received %,d/s  p99 %,d us%n", measuring ? "     " : "(warm)",
+                        s - lastSent, r - lastReceived, latency.percentile(0.99) / 1000);
+                lastSent = s;
+                lastReceived = r;
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+            TimeUnit.MICROSECONDS.sleep(200);
+        }
+
+        // Let in-flight messages arrive before reporting.
+        TimeUnit.MILLISECONDS.sleep(500);
+        System.out.println();
+        System.out.printf("Sent:      %,d (%,d rejected)%n", sent.sum(), failed.sum());
+        System.out.printf("Received:  %,d%n", received.sum());
+        System.out.printf("Rate:      %,.0f msgs/sec delivered%n", received.sum() / (double) seconds);
+        System.out.printf("Latency:   p50 %,d us  p99 %,d us  p99.9 %,d us  max %,d us%n",
+                latency.percentile(0.50) / 1000, latency.percentile(0.99) / 1000,
+                latency.percentile(0.999) / 1000, latency.max() / 1000);
+
+        for (SimulatedUser session : sessions) {
+            session.close();
+        }
+        for (ClientEngine engine : engines) {
+            engine.shutdown();
+        }
+    }
+
+    // Usernames are letters only, like the ones /msg accepts.
+    private static String name(int i) {
+        StringBuilder sb = new StringBuilder("user");
+        do {
+            sb.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return sb.toString();
+    }
+
+    // A headless session that records how long each incoming message took to arrive.
+    private final class SimulatedUser extends ChatSession {
+        private final CountDownLatch loggedIn;
+
+        SimulatedUser(ClientEngine engine, CountDownLatch loggedIn) {
+            super(engine);
+            this.loggedIn = loggedIn;
+        }
+
+        public void onLoginSuccess() {
+            super.onLoginSuccess();
+            loggedIn.countDown();
+        }
+
+        public void onIncomingMessage(CharSequence source, String content) {
+            long sentAt = 0;
+            for (int i = 1; i < content.length() && content.charAt(i) != 'x'; i++) {
+                sentAt = sentAt * 10 + (content.charAt(i) - '0');
+            }
+            // Warm-up messages still in flight once measuring starts are left out of the counts.
+            if (sentAt < measureFrom && System.nanoTime() - epoch >= measureFrom) {
+                return;
+            }
+            latency.record(System.nanoTime() - epoch - sentAt);
+            received.increment();
+        }
+    }
+}
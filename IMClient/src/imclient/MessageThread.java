@@ -0,0 +1,450 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * MessageThread reads user input after the user has logged into their account.
+ * Its ChatSession runs it on the session's input thread once the login is accepted, which allows
+ * the user to create input while the client is still reading from the server.
+ * <p>
+ * Several conversations can be open at once. Plain text goes to the current one; /msg and /to switch
+ * between them, and other commands leave the current conversation as it is. Each peer's messages are
+ * queued and sent separately by the session, so a long paste to one doesn't hold up the others.
+ * <p>
+ * Last Modified: 10/17/2026
+ * Created in Eclipse 4.2.2
+ */
+
+package imclient;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+
+public class MessageThread implements Runnable {
+    private final ChatSession session;    // Session this input belongs to
+    private final ConsoleRenderer out;    // The session's console
+    private final Scanner scan;
+    private final CommandTable commands = new CommandTable();
+    private final String userPrompt;
+    private final LinkedHashSet<String> conversations = new LinkedHashSet<>();    // Open conversations, oldest first.
+    private String friendName;            // Destination of the current conversation, or null if there is none.
+    private String conversationPrompt;    // "To [username]: " for the current conversation.
+    private boolean exiting;            // Set by /exit to end the input loop.
+    private static final int HISTORY_LINES = 20;    // Messages shown by /history and /search when no count is given.
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+    public MessageThread(ChatSession session, Scanner scan) {
+        this.session = session;
+        this.out = session.console();
+        this.scan = scan;
+        this.userPrompt = session.username() + ": ";
+
+        commands.register("/msg", this::message)
+                .register("/to", this::switchTo)
+                .register("/chats", this::chats)
+                .register("/close", this::closeConversation)
+                .register("/help", this::help)
+                .register("/add", this::addFriend)
+                .register("/friends", this::friends)
+                .register("/remove", this::removeFriend)
+                .register("/more", this::more)
+                .register("/history", this::history)
+                .register("/search", this::search)
+                .register("/exit", this::exit);
+    }
+
+    public void run() {
+        this.inputLoop();
+    }
+
+    private void inputLoop()
+    // Main loop for the IM client. Interprets user commands and messages. Returns messages to the server.
+    {
+        String userInput = readInput();
+
+        while (userInput != null) {
+            // While in a conversation, the user does not need to repeat the /msg command.
+            // Commands leave the conversation open; /close ends it.
+            if (friendName != null && (userInput.isEmpty() || userInput.charAt(0) != '/')) {
+                if (!userInput.isEmpty()) {
+                    send(userInput, 0, userInput.length());
+                }
+                out.prompt(conversationPrompt);
+                userInput = readInput();
+                continue;
+            }
+
+            if (!commands.dispatch(userInput)) {
+                // Handle invalid commands here.
+                out.println("\nError: Invalid command\n");
+                out.prompt(prompt());
+            }
+            if (exiting) {
+                return;
+            }
+            userInput = readInput();
+        }
+    }
+
+    // Read and trim the next line of input. Returns null once input is closed.
+    private String readInput() {
+        try {
+            return scan.nextLine().trim();
+        } catch (NoSuchElementException e) {
+            return null;
+        } catch (IllegalStateException e) {
+            out.println("Unable to read message contents: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Command syntax: /msg user message
+    // If a user messages another user, a conversation with that user is opened and becomes the current one.
+    private void message(String line, int args) {
+        int nameEnd = args;
+        while (nameEnd < line.length() && Names.isLetter(line.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        // The user name must be letters only, followed by a space and a message.
+        if (nameEnd == args || nameEnd + 1 >= line.length() || line.charAt(nameEnd) != ' ') {
+            out.println("\nError: Invalid command\n");
+            out.prompt(prompt());
+            return;
+        }
+        focus(line.substring(args, nameEnd));
+
+        /* Send Message Request Format:
+         *
+         * [PREFIX]=destination.source.[message content]
+         */
+        int start = nameEnd + 1;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        send(line, start, end);
+        out.prompt(conversationPrompt);
+    }
+
+    // Send content[start, end) to the current friend, unless it is too long to send.
+    private void send(String content, int start, int end) {
+        if (!ChatSession.fits(content, start, end)) {
+            out.println("\nError: Messages are limited to " + ChatSession.MAX_CONTENT + " bytes.\n");
+            return;
+        }
+        report(session.sendMessage(friendName, content, start, end));
+    }
+
+    // Command syntax: /to user
+    // Make the conversation with a user the current one, opening it if need be.
+    private void switchTo(String line, int args) {
+        String name = line.substring(args).trim();
+        if (!Names.valid(name)) {
+            out.println("\nError: Invalid command\n");
+        } else {
+            focus(name);
+        }
+        out.prompt(prompt());
+    }
+
+    // List the open conversations, with any messages still waiting to be sent.
+    private void chats(String line, int args) {
+        if (conversations.isEmpty()) {
+            out.println("\nNo conversations are open. Use /msg to start one.\n");
+        } else {
+            out.println("\n----------------------------------");
+            for (String name : conversations) {
+                int queued = session.queued(name);
+                out.println((name.equals(friendName) ? "* " : "  ") + name
+                        + (queued > 0 ? " (" + queued + " waiting to be sent)" : ""));
+            }
+            out.println("----------------------------------\n");
+        }
+        out.prompt(prompt());
+    }
+
+    // Command syntax: /close [user]
+    // Close the conversation with a user, or the current one. Messages already typed are still sent.
+    private void closeConversation(String line, int args) {
+        String name = line.substring(args).trim();
+        if (name.isEmpty()) {
+            name = friendName;
+        }
+        if (name == null || !conversations.remove(name)) {
+            out.println("\nError: No such conversation\n");
+        } else if (name.equals(friendName)) {
+            // Fall back to the most recently opened conversation still open, if any.
+            String last = null;
+            for (String open : conversations) {
+                last = open;
+            }
+            if (last != null) {
+                focus(last);
+            } else {
+                friendName = null;
+                session.setPrompt(userPrompt);
+            }
+        }
+        out.prompt(prompt());
+    }
+
+    // Open a conversation with name if it isn't open, and make it the current one.
+    private void focus(String name) {
+        conversations.add(name);
+        friendName = name;
+        conversationPrompt = "To " + friendName + ": ";
+        // Set the message prompt to "To [username]: "
+        session.setPrompt(conversationPrompt);
+    }
+
+    // The prompt for the current conversation, or the command prompt if there is none.
+    private String prompt() {
+        return friendName != null ? conversationPrompt : userPrompt;
+    }
+
+    // Print the help menu
+    private void help(String line, int args) {
+        printHelpMenu();
+        out.prompt(prompt());
+    }
+
+    // Add a friend to this user's friends list.
+    private void addFriend(String line, int args) {
+        // If there are no arguments, then no friend is being added.
+        if (args == line.length()) {
+            out.println("Error: Invalid command.");
+        } else {
+            // Send an ADD FRIEND REQUEST to the server.
+            // Server will reply when it has checked the Add the Friend Request.
+            report(session.addFriend(line, args, line.length()));
+        }
+        out.prompt(prompt());
+    }
+
+    // Show this user's friends list. The server is only asked if the session's copy is out of date.
+    private void friends(String line, int args) {
+        session.showFriends();
+    }
+
+    // Remove a friend from this user's friends list.
+    private void removeFriend(String line, int args) {
+        if (args == line.length()) {
+            out.println("Error: Invalid command.");
+            out.prompt(prompt());
+            return;
+        }
+        report(session.removeFriend(line, args, line.length()));
+    }
+
+    // Show the next page of messages received while offline.
+    private void more(String line, int args) {
+        if (!session.moreBacklog()) {
+            out.println("\nThere are no more offline messages.\n");
+            out.prompt(prompt());
+        }
+    }
+
+    // Command syntax: /history user [count]
+    // Show the last messages exchanged with a user.
+    private void history(String line, int args) {
+        HistoryStore store = session.history();
+        int end = line.length();
+        while (end > args && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        int nameStart = args;
+        while (nameStart < end && line.charAt(nameStart) == ' ') {
+            nameStart++;
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < end && Names.isLetter(line.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        // An optional count follows the name: digits only, at most nine of them.
+        int countStart = nameEnd;
+        while (countStart < end && line.charAt(countStart) == ' ') {
+            countStart++;
+        }
+        int count = countStart == end ? HISTORY_LINES : 0;
+        for (int i = countStart; i < end && count >= 0; i++) {
+            char c = line.charAt(i);
+            count = c >= '0' && c <= '9' && i - countStart < 9 ? count * 10 + (c - '0') : -1;
+        }
+        if (store == null) {
+            out.println("\nHistory is not enabled.\n");
+        } else if (nameEnd == nameStart || (countStart == nameEnd && nameEnd != end) || count <= 0) {
+            out.println("Error: Invalid command.");
+        } else {
+            String name = line.substring(nameStart, nameEnd);
+            List<HistoryRecord> records = store.last(name, count);
+            if (records.isEmpty()) {
+                out.println("\nNo messages with " + name + " yet.\n");
+            } else {
+                out.println("\n----------------------------------");
+                printRecords(records);
+                out.println("----------------------------------\n");
+            }
+        }
+        out.prompt(prompt());
+    }
+
+    // Command syntax: /search text
+    // Show the newest messages, in any conversation, containing the text.
+    private void search(String line, int args) {
+        HistoryStore store = session.history();
+        String text = line.substring(args).trim();
+        if (store == null) {
+            out.println("\nHistory is not enabled.\n");
+        } else if (text.isEmpty()) {
+            out.println("Error: Invalid command.");
+        } else {
+            List<HistoryRecord> records = store.search(text, null, HISTORY_LINES);
+            if (records.isEmpty()) {
+                out.println("\nNo messages contain \"" + text + "\".\n");
+            } else {
+                out.println("\n----------------------------------");
+                printRecords(records);
+                out.println("----------------------------------\n");
+            }
+        }
+        out.prompt(prompt());
+    }
+
+    private void printRecords(List<HistoryRecord> records) {
+        for (HistoryRecord record : records) {
+            String from = record.outgoing() ? "To " + record.peer() : record.peer();
+            out.println("[" + timeFormat.format(new Date(record.timestamp())) + "] " + from + ": " + record.content());
+        }
+    }
+
+    // Exit the program
+    private void exit(String line, int args) {
+        // Tell the server this client is exiting.
+        out.println("\nGoodbye!");
+        exiting = true;
+        session.exit();
+    }
+
+    // Tell the user if a request had to be dropped.
+    private void report(boolean queued) {
+        if (!queued) {
+            out.println("\nError: Too many requests are waiting to be sent. Try again.\n");
+        }
+    }
+
+    private void printHelpMenu()
+    // Prints the help menu.
+    {
+        out.println();
+        String leftCol, rightCol, format, separator;
+        leftCol = "COMMAND";
+        rightCol = "DESCRIPTION";
+        format = "%1$-24s%2$-60s%n";    // The format here is two columns. The left one is 24 characters long, the next is 60, and they're followed by a new line.
+        separator = "------------------------------------------------------------------------------";
+        out.format(format, leftCol, rightCol);
+        out.println(separator);
+
+        for (int i = 1; i <= 11; i++) {
+            switch (i) {
+                case 1:
+                    leftCol = "/exit";
+                    rightCol = "Exits the program.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+                    break;
+                case 2:
+                    leftCol = "/msg [user] [message]";
+                    rightCol = "Sends a message to a user. Put the user's username where [user] is, and your message at [message].";
+                    out.format(format, leftCol, rightCol);
+
+                    leftCol = "";
+                    rightCol = "You only need to enter this command once. The conversation stays open until you /close it.";
+                    out.format(format, leftCol, rightCol);
+
+                    rightCol = "The messenger will read any new text you enter as another message to the user you specified.";
+                    out.format(format, leftCol, rightCol);
+
+                    rightCol = "EXAMPLE:";
+                    out.format(format, leftCol, rightCol);
+
+                    rightCol = "You: /msg YourFriend Hey!";
+                    out.format(format, leftCol, rightCol);
+
+                    rightCol = "You: What are you up to?";
+                    out.format(format, leftCol, rightCol);
+
+                    out.println(separator);
+                    break;
+                case 3:
+                    leftCol = "/friends";
+                    rightCol = "Displays your friends list.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 4:
+                    leftCol = "/add [user]";
+                    rightCol = "Add a user to your friends list.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 5:
+                    leftCol = "/remove [user]";
+                    rightCol = "Remove a user from your friends list.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 6:
+                    leftCol = "/more";
+                    rightCol = "Shows more of the messages you received while offline.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 7:
+                    leftCol = "/history [user] [count]";
+                    rightCol = "Shows your last messages with a user. [count] is optional and defaults to 20.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 8:
+                    leftCol = "/search [text]";
+                    rightCol = "Shows your newest messages that contain the text.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 9:
+                    leftCol = "/to [user]";
+                    rightCol = "Switches to your conversation with a user. New text is sent to them.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 10:
+                    leftCol = "/chats";
+                    rightCol = "Lists your open conversations. The current one is marked with *.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                case 11:
+                    leftCol = "/close [user]";
+                    rightCol = "Closes your conversation with a user, or the current one if [user] is left out.";
+                    out.format(format, leftCol, rightCol);
+                    out.println(separator);
+
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * Names checks user names the way the server does: one or more ASCII letters and nothing else.
+ * Every front end validates names here before a request is built, since a dot or a line break in
+ * a name would change what the request means.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public final class Names {
+    private Names() {
+    }
+
+    public static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    // True if name is a valid user name. Null is not.
+    public static boolean valid(CharSequence name) {
+        boolean ok = name != null && name.length() > 0;
+        for (int i = 0; ok && i < name.length(); i++) {
+            ok = isLetter(name.charAt(i));
+        }
+        return ok;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * OutboundQueue holds request lines waiting to be written to the server.
+ * Producers enqueue from any thread; the ClientEngine drains up to maxBatch lines at a time
+ * into a single socket write, optionally lingering briefly so a burst goes out together.
+ * When the queue is full, producers either wait for room or have the line rejected.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class OutboundQueue {
+    // What a producer does when the queue is full.
+    public enum Policy {
+        BLOCK,        // Wait until the writer makes room.
+        REJECT        // Drop the line and report failure to the caller.
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_BATCH = 64;
+    public static final long DEFAULT_LINGER_MICROS = 1000;
+
+    private final ArrayBlockingQueue<String> queue;
+    private final int maxBatch;
+    private final long lingerNanos;
+    private final Policy policy;
+
+    public OutboundQueue() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_BATCH, DEFAULT_LINGER_MICROS, TimeUnit.MICROSECONDS, Policy.BLOCK);
+    }
+
+    public OutboundQueue(int capacity, int maxBatch, long linger, TimeUnit unit, Policy policy) {
+        if (capacity <= 0 || maxBatch <= 0 || linger < 0) {
+            throw new IllegalArgumentException("capacity and maxBatch must be positive and linger non-negative");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.lingerNanos = unit.toNanos(linger);
+        this.policy = policy;
+    }
+
+    // Add a line according to the queue's policy. Returns false if the line was not queued.
+    public boolean offer(String line) {
+        if (policy == Policy.REJECT) {
+            return queue.offer(line);
+        }
+        try {
+            queue.put(line);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Add a line only if there is room right now, whatever the policy.
+    public boolean tryOffer(String line) {
+        return queue.offer(line);
+    }
+
+    public String poll() {
+        return queue.poll();
+    }
+
+    // Drop every queued line.
+    public void clear() {
+        queue.clear();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    // Number of lines waiting to be written.
+    public int size() {
+        return queue.size();
+    }
+
+    public int maxBatch() {
+        return maxBatch;
+    }
+
+    public long lingerNanos() {
+        return lingerNanos;
+    }
+
+    public Policy policy() {
+        return policy;
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * Outbox remembers SEND MESSAGE REQUESTs the server may not have processed yet, so they can be
+ * sent again after a reconnect. The server doesn't acknowledge a delivered message, but it handles
+ * a connection's requests in order, so a message is confirmed once the reply to any request queued
+ * after it arrives, or once a failure notice names its destination.
+ * <p>
+ * Each entry gets a sequence number after it is queued on the connection; reply-bearing requests
+ * take theirs before they are queued. A reply therefore never confirms a message queued after its
+ * request, whichever threads are sending.
+ * <p>
+ * While the session is disconnected the outbox holds new messages instead of letting them be sent,
+ * and release() sends everything unconfirmed, in order, on the new connection. The outbox is bounded;
+ * when it is full the oldest message is forgotten.
+ * <p>
+ * An entry may carry a receipt, completed with its SendResult once the entry is confirmed, or
+ * exceptionally if it is forgotten. It also carries the time it was first sent, so a message sent
+ * again after a reconnect is still timed from then (see SendTimes). Rather than forget a message
+ * someone is waiting on, a full outbox refuses new messages with receipts; ChatSession holds them
+ * back until there is room. Receipts complete on the thread that confirms or forgets the entry.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.ToLongFunction;
+
+public class Outbox {
+    public static final int DEFAULT_CAPACITY = 256;
+    static final long UNSENT = Long.MAX_VALUE;        // Sequence number of an entry not yet queued.
+    static final Entry FULL = new Entry(null, null, null, 0);    // Returned by add() for a refused message.
+
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();    // Oldest first.
+    private boolean holding;                        // Disconnected: new entries wait for release().
+    private int dropped;                            // Entries forgotten while holding because the outbox was full.
+
+    public Outbox() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public Outbox(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    // Remember a message about to be sent. Returns null if the outbox is holding, in which case the
+    // message must not be sent now; release() sends it later.
+    public Entry add(String destination, String line) {
+        return add(destination, line, null);
+    }
+
+    // As above, completing receipt once the message is confirmed. Returns FULL, adding nothing, if
+    // the outbox is full and receipt is not null.
+    public Entry add(String destination, String line, CompletableFuture<SendResult> receipt) {
+        return add(destination, line, receipt, System.nanoTime());
+    }
+
+    // As above, for a message sent at sentAt (System.nanoTime()).
+    public synchronized Entry add(String destination, String line, CompletableFuture<SendResult> receipt, long sentAt) {
+        if (entries.size() == capacity) {
+            if (receipt != null) {
+                return FULL;
+            }
+            forget(entries.pollFirst(), new IOException("Too many messages awaiting confirmation"));
+            if (holding) {
+                dropped++;
+            }
+        }
+        Entry entry = new Entry(destination, line, receipt, sentAt);
+        entries.addLast(entry);
+        return holding ? null : entry;
+    }
+
+    // The entry's line is now queued on the connection. Ignored if the connection was lost meanwhile,
+    // since release() sends the entry again.
+    public synchronized void sent(Entry entry, long seq) {
+        if (!holding && entry.seq == UNSENT) {
+            entry.seq = seq;
+        }
+    }
+
+    // The entry's line could not be queued and will not be retried.
+    public synchronized void remove(Entry entry) {
+        entries.removeLastOccurrence(entry);
+    }
+
+    // A reply arrived to the request with sequence number seq. Everything queued before it was processed.
+    public synchronized void confirmBefore(long seq) {
+        while (!entries.isEmpty() && entries.peekFirst().seq < seq) {
+            entries.pollFirst().confirm(SendResult.DELIVERED);
+        }
+    }
+
+    // The server reported result for destination. The oldest message to it, and everything before it,
+    // was processed. Returns false if no sent message to destination was waiting.
+    public synchronized boolean confirmFailed(String destination, SendResult result) {
+        int count = 0;
+        for (Entry entry : entries) {
+            count++;
+            if (entry.seq != UNSENT && entry.destination.equals(destination)) {
+                for (int i = 1; i < count; i++) {
+                    entries.pollFirst().confirm(SendResult.DELIVERED);
+                }
+                entries.pollFirst().confirm(result);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The session is over. Forget every message, failing its receipt with cause.
+    public synchronized void fail(IOException cause) {
+        Entry entry;
+        while ((entry = entries.pollFirst()) != null) {
+            forget(entry, cause);
+        }
+    }
+
+    // True if any queued message is still unconfirmed.
+    public synchronized boolean hasSent() {
+        for (Entry entry : entries) {
+            if (entry.seq != UNSENT) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The connection is gone. Hold new messages until release().
+    public synchronized void hold() {
+        holding = true;
+        for (Entry entry : entries) {
+            entry.seq = UNSENT;
+        }
+    }
+
+    // Send every held message through send, oldest first, then stop holding. send returns the sequence
+    // number the entry's line was queued with, or -1 if it could not be queued; such entries wait for the
+    // next release. Returns the number of messages sent.
+    public synchronized int release(ToLongFunction<Entry> send) {
+        int count = 0;
+        for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            long seq = send.applyAsLong(entry);
+            if (seq >= 0) {
+                entry.seq = seq;
+                count++;
+            }
+        }
+        holding = false;
+        return count;
+    }
+
+    // Messages forgotten while disconnected because the outbox was full, since the last call.
+    public synchronized int takeDropped() {
+        int n = dropped;
+        dropped = 0;
+        return n;
+    }
+
+    // True if a message with a receipt would be refused.
+    public synchronized boolean full() {
+        return entries.size() == capacity;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static void forget(Entry entry, IOException cause) {
+        if (entry.receipt != null) {
+            entry.receipt.completeExceptionally(cause);
+        }
+    }
+
+    public static final class Entry {
+        final String destination;
+        final String line;
+        final CompletableFuture<SendResult> receipt;    // Null if nobody is waiting for the result.
+        final long sentAt;                        // System.nanoTime() when the message was sent.
+        long seq = UNSENT;
+
+        Entry(String destination, String line, CompletableFuture<SendResult> receipt, long sentAt) {
+            this.destination = destination;
+            this.line = line;
+            this.receipt = receipt;
+            this.sentAt = sentAt;
+        }
+
+        private void confirm(SendResult result) {
+            if (receipt != null) {
+                receipt.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * PeerScheduler keeps outgoing messages in one queue per recipient and hands them out round-robin,
+ * a few from each peer per turn, so a long paste to one peer can't hold up messages to the others.
+ * Messages to the same peer keep their order.
+ * <p>
+ * Producers add from any thread without locking; a peer joins the round when its queue goes from empty
+ * to non-empty and leaves it once drained. A drained peer is retired for good, so a producer that
+ * finds it retired queues on its replacement instead and a peer's messages never sit in two queues.
+ * Each peer's queue is bounded: a producer waits for room, except on the event loop, where the message
+ * is refused. Only the event loop takes messages out.
+ * <p>
+ * A producer that races with close() takes its message back out and refuses it, so after close() every
+ * message was either passed to dropped or refused to its producer.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class PeerScheduler<T> {
+    public static final int DEFAULT_QUANTUM = 4;                // Messages taken from a peer per turn.
+    public static final int DEFAULT_PEER_CAPACITY = 1024;        // Messages waiting per peer before producers wait.
+    private static final int DRAINED = -1;                        // Peer.queued once the peer is retired.
+
+    private final int quantum;
+    private final int peerCapacity;
+    private final ConcurrentHashMap<String, Peer> peers = new ConcurrentHashMap<>();    // Peers with queued messages.
+    private final ConcurrentLinkedQueue<Peer> round = new ConcurrentLinkedQueue<>();    // Peers waiting for a turn.
+    private volatile boolean closed;
+
+    // Only touched by the event loop.
+    private Peer current;                    // Peer whose turn it is, or null.
+    private int turnLeft;                        // Messages current may still give this turn.
+
+    public PeerScheduler() {
+        this(DEFAULT_QUANTUM, DEFAULT_PEER_CAPACITY);
+    }
+
+    public PeerScheduler(int quantum, int peerCapacity) {
+        if (quantum <= 0 || peerCapacity <= 0) {
+            throw new IllegalArgumentException("quantum and peerCapacity must be positive");
+        }
+        this.quantum = quantum;
+        this.peerCapacity = peerCapacity;
+    }
+
+    // Queue item for peer. Waits while peer's queue is full, unless wait is false. Returns false if the
+    // item was not queued: the queue was full and wait false, the thread was interrupted, or the
+    // scheduler is closed.
+    public boolean add(String peer, T item, boolean wait) {
+        while (true) {
+            Peer p = peers.computeIfAbsent(peer, Peer::new);
+            if (!(wait ? acquire(p.room) : p.room.tryAcquire())) {
+                return false;
+            }
+            if (closed) {
+                p.room.release();                // Leave it for the next producer close() woke.
+                return false;
+            }
+            // Counted before it is added, so the event loop never retires a peer with a message still to come.
+            int queued = p.queued.get();
+            while (queued != DRAINED && !p.queued.compareAndSet(queued, queued + 1)) {
+                queued = p.queued.get();
+            }
+            if (queued == DRAINED) {
+                // The event loop drained p and retired it after we looked it up. A message queued on it would
+                // go out after those queued on its replacement, so queue it there instead.
+                p.room.release();
+                peers.remove(peer, p);
+                continue;
+            }
+            p.items.add(item);
+            // The first message joins the peer to the round. The event loop puts it back while it has more.
+            if (queued == 0) {
+                round.add(p);
+            }
+            // close() may have drained before the item was added. Whichever of us removes it owns it.
+            if (closed && p.items.remove(item)) {
+                p.room.release();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    // The next message to send, taking turns between peers. Null if none is queued. Event loop only.
+    public T next() {
+        T item = peek();
+        if (item == null) {
+            return null;
+        }
+        current.items.poll();
+        turnLeft--;
+        current.room.release();
+        if (current.queued.decrementAndGet() == 0) {
+            // Drained. Retire the peer, unless a producer has just queued on it again and rejoined the round.
+            Peer drained = current;
+            current = null;
+            if (drained.queued.compareAndSet(0, DRAINED)) {
+                peers.remove(drained.name, drained);
+            }
+        }
+        return item;
+    }
+
+    // The message next() would return, left queued, or null if there is none yet. A producer that has
+    // counted a message but not yet added it makes this null while isEmpty() is false, so a consumer
+    // should wait to hear from that producer rather than poll. Event loop only.
+    public T peek() {
+        if (current == null || turnLeft == 0) {
+            if (current != null) {
+                endTurn();
+            }
+            current = round.poll();
+            if (current == null) {
+                return null;
+            }
+            turnLeft = quantum;
+        }
+        return current.items.peek();            // Null only for the moment a producer takes between counting and adding.
+    }
+
+    // True if no messages are queued. Event loop only.
+    public boolean isEmpty() {
+        return current == null && round.isEmpty();
+    }
+
+    // Messages queued for every peer. Safe to call from any thread; a snapshot while producers add.
+    public int size() {
+        int total = 0;
+        for (Peer p : peers.values()) {
+            total += Math.max(p.queued.get(), 0);
+        }
+        return total;
+    }
+
+    // Messages queued for peer.
+    public int queued(String peer) {
+        Peer p = peers.get(peer);
+        return p == null ? 0 : Math.max(p.queued.get(), 0);
+    }
+
+    // Refuse new messages, wake any producer waiting for room, and pass every queued message to
+    // dropped. Event loop only.
+    public void close(Consumer<T> dropped) {
+        closed = true;
+        for (Peer p : peers.values()) {
+            p.room.release(peerCapacity);
+        }
+        T item;
+        while ((item = next()) != null) {
+            dropped.accept(item);
+        }
+        // next() stops early at a peer whose producer has counted a message but not added it yet.
+        for (Peer p : peers.values()) {
+            while ((item = p.items.poll()) != null) {
+                dropped.accept(item);
+            }
+        }
+    }
+
+    // current's turn is over. Back to the end of the round; it still has messages.
+    private void endTurn() {
+        round.add(current);
+        current = null;
+    }
+
+    private static boolean acquire(Semaphore room) {
+        try {
+            room.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private final class Peer {
+        final String name;
+        final ConcurrentLinkedQueue<T> items = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();    // Items added and not yet taken, or DRAINED.
+        final Semaphore room = new Semaphore(peerCapacity);
+
+        Peer(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * PresenceCache is the client's copy of its friends list: each friend and whether they are online.
+ * It is loaded from SHOW FRIENDS LIST and then kept up to date from the server's other replies
+ * (friends added and removed, messages that could not be delivered, messages received), so the
+ * friends list can be shown without asking the server. Each change moves one name between the
+ * online and offline sets; nothing is rebuilt. The cache goes stale after a time-to-live, or
+ * when a change leaves a friend's status unknown, and is then fetched again.
+ * Only the event loop touches it.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+public class PresenceCache {
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    private final long ttlNanos;
+    private final LinkedHashSet<String> online = new LinkedHashSet<>();    // In the order the server listed them.
+    private final LinkedHashSet<String> offline = new LinkedHashSet<>();
+    private boolean loaded;                // False until a full list has arrived, and after invalidate().
+    private long loadedAt;                // System.nanoTime() when the last full list arrived.
+
+    public PresenceCache() {
+        this(DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public PresenceCache(long ttl, TimeUnit unit) {
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    // True if the cached list can be shown without asking the server.
+    public boolean fresh(long now) {
+        return loaded && now - loadedAt < ttlNanos;
+    }
+
+    // Forget that the list is current. The next lookup fetches it again.
+    public void invalidate() {
+        loaded = false;
+    }
+
+    // A full friends list is arriving. It replaces everything cached.
+    public void beginLoad() {
+        online.clear();
+        offline.clear();
+    }
+
+    public void endLoad(long now) {
+        loaded = true;
+        loadedAt = now;
+    }
+
+    // Record a friend's status. Names that are not friends are added.
+    public void put(String name, boolean isOnline) {
+        if (isOnline) {
+            offline.remove(name);
+            online.add(name);
+        } else {
+            online.remove(name);
+            offline.add(name);
+        }
+    }
+
+    // Record a status seen outside the friends list. Ignored if name is not a friend.
+    public void update(String name, boolean isOnline) {
+        if (isOnline ? offline.remove(name) : online.remove(name)) {
+            (isOnline ? online : offline).add(name);
+        }
+    }
+
+    public void remove(String name) {
+        if (!online.remove(name)) {
+            offline.remove(name);
+        }
+    }
+
+    public boolean contains(String name) {
+        return online.contains(name) || offline.contains(name);
+    }
+
+    public Collection<String> online() {
+        return Collections.unmodifiableCollection(online);
+    }
+
+    public Collection<String> offline() {
+        return Collections.unmodifiableCollection(offline);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * RequestEncoder builds request lines for the IMServer in a single reusable StringBuilder.
+ * Requests are [PREFIX]=field.field..., so each encoder method returns a view that is
+ * only valid until the next call. An encoder belongs to one thread.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public final class RequestEncoder {
+    public static final String LOGIN = "LOGIN REQUEST=";
+    public static final String SEND_MESSAGE = "SEND MESSAGE REQUEST=";
+    public static final String FRIENDS_LIST = "FRIENDS LIST REQUEST=";
+    public static final String ADD_FRIEND = "ADD FRIEND REQUEST=";
+    public static final String REMOVE_FRIEND = "REMOVE FRIEND REQUEST=";
+    public static final String EXIT = "EXIT REQUEST=";
+
+    private final StringBuilder line = new StringBuilder(128);
+    private boolean firstField;
+
+    // LOGIN REQUEST=username.password
+    public CharSequence login(CharSequence username, CharSequence password) {
+        return begin(LOGIN).field(username).field(password).line();
+    }
+
+    // LOGIN REQUEST=username.password.protocol, offering the server a BinaryProtocol.
+    public CharSequence login(CharSequence username, CharSequence password, String protocol) {
+        return begin(LOGIN).field(username).field(password).field(protocol).line();
+    }
+
+    // SEND MESSAGE REQUEST=destination.source.[message content]
+    public CharSequence sendMessage(CharSequence destination, CharSequence source, CharSequence content) {
+        return sendMessage(destination, source, content, 0, content.length());
+    }
+
+    public CharSequence sendMessage(CharSequence destination, CharSequence source, CharSequence content, int start, int end) {
+        return begin(SEND_MESSAGE).field(destination).field(source).field(content, start, end).line();
+    }
+
+    // FRIENDS LIST REQUEST=username
+    public CharSequence friendsList(CharSequence username) {
+        return begin(FRIENDS_LIST).field(username).line();
+    }
+
+    // ADD FRIEND REQUEST=username.friend
+    public CharSequence addFriend(CharSequence username, CharSequence friend, int start, int end) {
+        return begin(ADD_FRIEND).field(username).field(friend, start, end).line();
+    }
+
+    // REMOVE FRIEND REQUEST=username.friend
+    public CharSequence removeFriend(CharSequence username, CharSequence friend, int start, int end) {
+        return begin(REMOVE_FRIEND).field(username).field(friend, start, end).line();
+    }
+
+    // EXIT REQUEST=username
+    public CharSequence exit(CharSequence username) {
+        return begin(EXIT).field(username).line();
+    }
+
+    // Start a new request line with the given prefix, discarding the previous one.
+    public RequestEncoder begin(String prefix) {
+        line.setLength(0);
+        line.append(prefix);
+        firstField = true;
+        return this;
+    }
+
+    public RequestEncoder field(CharSequence s) {
+        return field(s, 0, s.length());
+    }
+
+    // Append s[start, end) as the next '.'-separated field.
+    public RequestEncoder field(CharSequence s, int start, int end) {
+        if (!firstField) {
+            line.append('.');
+        }
+        firstField = false;
+        line.append(s, start, end);
+        return this;
+    }
+
+    public CharSequence line() {
+        return line;
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * SendResult is what the server did with a sent message. The server only reports failures, so
+ * DELIVERED means it processed the message and reported nothing: see Outbox.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public enum SendResult {
+    DELIVERED,                // The recipient was online and the message was passed on.
+    STORED_OFFLINE,            // SEND UMESSAGE FAILED: the recipient is offline and gets the message at their next login.
+    UNKNOWN_USER,            // SEND MESSAGE REQUEST FAILED: there is no such user.
+    DISCONNECTED            // SEND UMESSAGE DISCONNECT: the recipient disconnected during delivery. The message may be lost.
+}
@@ -0,0 +1,112 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * SendTimes remembers when each SEND MESSAGE REQUEST was written, so the server's failure or disconnect
+ * notice for it can be timed, whether or not the message is also kept in the Outbox. Like the Outbox it
+ * relies on the server handling requests in order: a reply confirms every message written before its
+ * request, and a notice naming a destination concerns the oldest unconfirmed message to it.
+ * <p>
+ * Times are kept in a ring of parallel arrays, so remembering a message allocates nothing. At most
+ * capacity messages are remembered and the oldest is forgotten to make room. A session that gets no
+ * replies confirms nothing, so a notice may then be timed from an older message to the same destination
+ * that was in fact delivered. Only the event loop touches it.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public class SendTimes {
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private final int capacity;
+    private long[] seqs = new long[16];                    // Sequence numbers the messages were written with.
+    private long[] times = new long[16];                // System.nanoTime() when each was sent.
+    private String[] destinations = new String[16];
+    private int head;                                    // Index of the oldest message.
+    private int size;
+
+    public SendTimes() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SendTimes(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // A message to destination, sent at sentAt, was written with sequence number seq.
+    public void sent(String destination, long seq, long sentAt) {
+        if (size == capacity) {
+            drop(1);
+        } else if (size == seqs.length) {
+            grow();
+        }
+        int i = (head + size) & (seqs.length - 1);
+        seqs[i] = seq;
+        times[i] = sentAt;
+        destinations[i] = destination;
+        size++;
+    }
+
+    // A reply arrived to the request with sequence number seq. Every message written before it was processed.
+    public void confirmBefore(long seq) {
+        while (size > 0 && seqs[head] < seq) {
+            drop(1);
+        }
+    }
+
+    // The server sent a notice for the oldest unconfirmed message to destination. Returns when that
+    // message was sent, or -1 if none is remembered. It and everything before it are forgotten.
+    public long reported(String destination) {
+        int mask = seqs.length - 1;
+        for (int n = 0; n < size; n++) {
+            int i = (head + n) & mask;
+            if (destinations[i].equals(destination)) {
+                long sentAt = times[i];
+                drop(n + 1);
+                return sentAt;
+            }
+        }
+        return -1;
+    }
+
+    // The connection is gone, and any notices with it.
+    public void clear() {
+        drop(size);
+    }
+
+    private void drop(int n) {
+        int mask = seqs.length - 1;
+        for (int k = 0; k < n; k++) {
+            destinations[head] = null;
+            head = (head + 1) & mask;
+        }
+        size -= n;
+    }
+
+    // Double the arrays, unrolling the ring so the oldest message is first.
+    private void grow() {
+        int length = seqs.length;
+        long[] s = new long[length * 2];
+        long[] t = new long[length * 2];
+        String[] d = new String[length * 2];
+        for (int n = 0; n < size; n++) {
+            int i = (head + n) & (length - 1);
+            s[n] = seqs[i];
+            t[n] = times[i];
+            d[n] = destinations[i];
+        }
+        seqs = s;
+        times = t;
+        destinations = d;
+        head = 0;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ServerCommand lists the command tokens the IMServer sends, i.e. the text before the '=' of each line.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public enum ServerCommand {
+    LOGIN("LOGIN REQUEST"),                                    // =RETRY or =SUCCESS.[source.content]...
+    FRIENDS_LIST("SHOW FRIENDS LIST"),                        // =name.True.name.False... or =null
+    SEND_REQUEST_FAILED("SEND MESSAGE REQUEST FAILED"),        // =destination
+    REMOVE_FRIEND("REMOVE FRIEND REQUEST"),                    // =SUCCESSFUL or =FAILED
+    USER_OFFLINE("SEND UMESSAGE FAILED"),                    // =destination
+    USER_DISCONNECTED("SEND UMESSAGE DISCONNECT"),            // =destination
+    INCOMING_MESSAGE("INCOMING UMESSAGE"),                    // =source.content
+    ADD_FRIEND("ADD FRIEND REQUEST"),                        // =SUCCESS or =FAILED.name
+    PROTOCOL_SWITCH("PROTOCOL SWITCH");                        // =BINARY1, after which the server sends frames
+
+    private final String token;
+
+    ServerCommand(String token) {
+        this.token = token;
+    }
+
+    public String token() {
+        return token;
+    }
+}
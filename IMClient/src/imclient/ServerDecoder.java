@@ -0,0 +1,390 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ServerDecoder turns lines from the IMServer into ServerHandler events.
+ * The command token before the '=' is matched with a byte trie built once from ServerCommand,
+ * and fields are sliced by offset, so decoding a line allocates nothing except message content.
+ * The offline-message backlog in LOGIN REQUEST=SUCCESS. is handed to a BacklogReader, streaming it
+ * straight from the socket buffer when the line is long.
+ * <p>
+ * Once the server sends PROTOCOL SWITCH=BINARY1 the connection is switched to BinaryProtocol frames,
+ * which are decoded straight from the read buffer into the same ServerHandler events: names are
+ * ByteSlices and only message content becomes a String.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class ServerDecoder implements LineListener {
+    private static final int FIRST = ' ';                // Command tokens are printable ASCII.
+    private static final int LAST = '~';
+    private static final int WIDTH = LAST - FIRST + 1;
+    private static final int[] NEXT;                    // NEXT[node * WIDTH + c] is the child node + 1, or 0 for none.
+    private static final ServerCommand[] TERMINAL;        // Command whose token ends at each node.
+
+    static {
+        int nodes = 1;
+        for (ServerCommand command : ServerCommand.values()) {
+            nodes += command.token().length();
+        }
+        int[] next = new int[nodes * WIDTH];
+        ServerCommand[] terminal = new ServerCommand[nodes];
+        int used = 1;
+        for (ServerCommand command : ServerCommand.values()) {
+            String token = command.token();
+            int node = 0;
+            for (int i = 0; i < token.length(); i++) {
+                int slot = node * WIDTH + token.charAt(i) - FIRST;
+                if (next[slot] == 0) {
+                    next[slot] = ++used;
+                }
+                node = next[slot] - 1;
+            }
+            terminal[node] = command;
+        }
+        NEXT = next;
+        TERMINAL = terminal;
+    }
+
+    private static final String LOGIN_SUCCESS = "LOGIN REQUEST=SUCCESS.";
+    public static final int DECODE_SAMPLE = 64;        // One line or frame in this many is timed. A power of two.
+
+    private final ServerHandler handler;
+    private final ClientMetrics metrics;                // Null if nothing is recorded.
+    private final BacklogReader backlog;
+    private final ByteSlice first = new ByteSlice();    // Reused views handed to the handler.
+    private final ByteSlice second = new ByteSlice();
+    private byte[] scratch = new byte[256];            // Names copied out of a direct buffer.
+    private byte[] text = new byte[1024];            // Message content copied out of a direct buffer.
+    private int offlineCount;                        // Offline messages in the current binary backlog.
+    private int untimed;                            // Lines and frames decoded since the last one timed.
+
+    public ServerDecoder(ServerHandler handler) {
+        this(handler, null);
+    }
+
+    // Decoder that counts lines by command in metrics and times one decode in DECODE_SAMPLE there;
+    // two clock reads per line would cost about as much as decoding it.
+    public ServerDecoder(ServerHandler handler, ClientMetrics metrics) {
+        this.handler = handler;
+        this.metrics = metrics;
+        this.backlog = new BacklogReader(handler);
+    }
+
+    public void onLine(Connection connection, byte[] line, int off, int len) {
+        if (connection != null && len == BinaryProtocol.SWITCH.length() && equals(line, off, off + len, BinaryProtocol.SWITCH)) {
+            if (metrics != null) {
+                metrics.message(ServerCommand.PROTOCOL_SWITCH);
+            }
+            connection.switchToBinary();
+            return;
+        }
+        if (metrics == null || (++untimed & (DECODE_SAMPLE - 1)) != 0) {
+            decode(line, off, len);
+            return;
+        }
+        long start = System.nanoTime();
+        decode(line, off, len);
+        metrics.decoded(System.nanoTime() - start);
+    }
+
+    // Stream LOGIN REQUEST=SUCCESS. lines, which carry the whole offline backlog, instead of buffering them.
+    public LineStream startStream(Connection connection, byte[] prefix, int off, int len) {
+        if (!startsWith(prefix, off, off + len, LOGIN_SUCCESS)) {
+            return null;
+        }
+        if (metrics != null) {
+            metrics.message(ServerCommand.LOGIN);
+        }
+        handler.onLoginSuccess();
+        return backlog.start(LOGIN_SUCCESS.length());
+    }
+
+    public void onFrame(Connection connection, ByteBuffer frame) {
+        if (metrics == null || (++untimed & (DECODE_SAMPLE - 1)) != 0) {
+            decode(frame);
+            return;
+        }
+        long start = System.nanoTime();
+        decode(frame);
+        metrics.decoded(System.nanoTime() - start);
+    }
+
+    public void onClose(Connection connection, IOException cause) {
+        handler.onDisconnect(cause);
+    }
+
+    // Decode one line (without its terminator) and deliver its events.
+    public void decode(byte[] line, int off, int len) {
+        int end = off + len;
+        int eq = off;
+        int node = 0;
+        // Walk the trie until the '=' that ends the command token.
+        while (eq < end && line[eq] != '=') {
+            int c = line[eq] - FIRST;
+            if (c < 0 || c >= WIDTH || (node = NEXT[node * WIDTH + c] - 1) < 0) {
+                break;
+            }
+            eq++;
+        }
+        ServerCommand command = eq < end && line[eq] == '=' && node >= 0 ? TERMINAL[node] : null;
+        if (metrics != null) {
+            metrics.message(command);
+        }
+
+        if (command == null || !dispatch(command, line, eq + 1, end)) {
+            handler.onUnknown(first.set(line, off, len));
+        }
+        handler.onLineEnd();
+    }
+
+    // Decode one BinaryProtocol frame, positioned at its opcode, and deliver its events.
+    // Every frame but those of an offline backlog ends a line, as the text line it replaces would.
+    public void decode(ByteBuffer frame) {
+        int opcode = frame.get() & 0xff;
+        if (metrics != null && opcode != BinaryProtocol.OFFLINE_MESSAGE && opcode != BinaryProtocol.OFFLINE_END) {
+            metrics.message(BinaryProtocol.command(opcode));
+        }
+        boolean ok;
+        switch (opcode) {
+            case BinaryProtocol.INCOMING_MESSAGE:
+            case BinaryProtocol.OFFLINE_MESSAGE:
+                int sourceLength = BinaryProtocol.readVarint(frame);
+                ok = sourceLength >= 0 && sourceLength <= frame.remaining();
+                if (ok) {
+                    CharSequence source = slice(frame, sourceLength, first);
+                    String content = string(frame);
+                    if (opcode == BinaryProtocol.OFFLINE_MESSAGE) {
+                        offlineCount++;
+                        handler.onOfflineMessage(source, content);
+                        return;
+                    }
+                    handler.onIncomingMessage(source, content);
+                }
+                break;
+            case BinaryProtocol.USER_OFFLINE:
+                handler.onUserOffline(slice(frame, frame.remaining(), first));
+                ok = true;
+                break;
+            case BinaryProtocol.USER_DISCONNECTED:
+                handler.onUserDisconnected(slice(frame, frame.remaining(), first));
+                ok = true;
+                break;
+            case BinaryProtocol.SEND_REQUEST_FAILED:
+                handler.onSendRequestFailed(slice(frame, frame.remaining(), first));
+                ok = true;
+                break;
+            case BinaryProtocol.FRIENDS:
+                ok = decodeFriends(frame);
+                break;
+            case BinaryProtocol.LOGIN_SUCCESS:
+                offlineCount = 0;
+                handler.onLoginSuccess();
+                return;
+            case BinaryProtocol.OFFLINE_END:
+                handler.onOfflineMessagesEnd(offlineCount);
+                offlineCount = 0;
+                ok = true;
+                break;
+            case BinaryProtocol.LOGIN_RETRY:
+                handler.onLoginRetry();
+                ok = true;
+                break;
+            case BinaryProtocol.ADD_FRIEND_RESULT:
+                ok = frame.hasRemaining();
+                if (ok) {
+                    boolean success = frame.get() != 0;
+                    handler.onAddFriendResult(success, slice(frame, frame.remaining(), first));
+                }
+                break;
+            case BinaryProtocol.REMOVE_FRIEND_RESULT:
+                ok = frame.hasRemaining();
+                if (ok) {
+                    handler.onRemoveFriendResult(frame.get() != 0);
+                }
+                break;
+            default:
+                ok = false;
+        }
+        if (!ok) {
+            handler.onUnknown("frame " + opcode);
+        }
+        handler.onLineEnd();
+    }
+
+    // A friends list frame is (name, online byte)... and empty if the user has no friends.
+    private boolean decodeFriends(ByteBuffer frame) {
+        handler.onFriendsListStart();
+        boolean ok = true;
+        while (frame.hasRemaining()) {
+            int nameLength = BinaryProtocol.readVarint(frame);
+            if (nameLength < 0 || nameLength >= frame.remaining()) {
+                ok = false;
+                break;
+            }
+            CharSequence name = slice(frame, nameLength, first);
+            handler.onFriend(name, frame.get() != 0);
+        }
+        handler.onFriendsListEnd();
+        return ok;
+    }
+
+    // View the next len bytes of frame through slice, without copying if the frame is on the heap.
+    private ByteSlice slice(ByteBuffer frame, int len, ByteSlice slice) {
+        int at = frame.position();
+        frame.position(at + len);
+        if (frame.hasArray()) {
+            return slice.set(frame.array(), frame.arrayOffset() + at, len);
+        }
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        }
+        frame.get(at, scratch, 0, len);
+        return slice.set(scratch, 0, len);
+    }
+
+    // The rest of frame as UTF-8 text.
+    private String string(ByteBuffer frame) {
+        int len = frame.remaining();
+        int at = frame.position();
+        frame.position(at + len);
+        if (frame.hasArray()) {
+            return new String(frame.array(), frame.arrayOffset() + at, len, StandardCharsets.UTF_8);
+        }
+        byte[] b = text;
+        if (len > b.length) {
+            b = new byte[len];
+            if (len <= BacklogReader.MAX_FIELD) {
+                text = b;                            // Keep it, unless it is unusually large.
+            }
+        }
+        frame.get(at, b, 0, len);
+        return new String(b, 0, len, StandardCharsets.UTF_8);
+    }
+
+    // Find the command for a token, or null. Exposed for callers that already split the line.
+    public static ServerCommand lookup(byte[] token, int off, int len) {
+        int node = 0;
+        for (int i = off; i < off + len; i++) {
+            int c = token[i] - FIRST;
+            if (c < 0 || c >= WIDTH || (node = NEXT[node * WIDTH + c] - 1) < 0) {
+                return null;
+            }
+        }
+        return TERMINAL[node];
+    }
+
+    // Deliver the events for one command whose value is line[start, end). Returns false if the value is malformed.
+    private boolean dispatch(ServerCommand command, byte[] line, int start, int end) {
+        int dot;
+        switch (command) {
+            case LOGIN:
+                if (equals(line, start, end, "RETRY")) {
+                    handler.onLoginRetry();
+                    return true;
+                }
+                if (!startsWith(line, start, end, "SUCCESS.")) {
+                    return false;
+                }
+                handler.onLoginSuccess();
+                backlog.start(0).feed(line, start + "SUCCESS.".length(), end - start - "SUCCESS.".length());
+                backlog.finish();
+                return true;
+            case FRIENDS_LIST:
+                decodeFriends(line, start, end);
+                return true;
+            case SEND_REQUEST_FAILED:
+                handler.onSendRequestFailed(first.set(line, start, end - start));
+                return true;
+            case USER_OFFLINE:
+                handler.onUserOffline(first.set(line, start, end - start));
+                return true;
+            case USER_DISCONNECTED:
+                handler.onUserDisconnected(first.set(line, start, end - start));
+                return true;
+            case INCOMING_MESSAGE:
+                dot = indexOf(line, start, end, '.');
+                if (dot < 0) {
+                    return false;
+                }
+                handler.onIncomingMessage(first.set(line, start, dot - start),
+                        new String(line, dot + 1, end - dot - 1, StandardCharsets.UTF_8));
+                return true;
+            case ADD_FRIEND:
+                boolean failed = startsWith(line, start, end, "FAILED");
+                if (!failed && !startsWith(line, start, end, "SUCCESS")) {
+                    return false;
+                }
+                dot = indexOf(line, start, end, '.');
+                if (dot < 0) {
+                    dot = end;
+                }
+                handler.onAddFriendResult(!failed, first.set(line, Math.min(dot + 1, end), Math.max(end - dot - 1, 0)));
+                return true;
+            case REMOVE_FRIEND:
+                if (equals(line, start, end, "SUCCESSFUL")) {
+                    handler.onRemoveFriendResult(true);
+                    return true;
+                }
+                if (equals(line, start, end, "FAILED")) {
+                    handler.onRemoveFriendResult(false);
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    // The friends list is name.True.name.False..., or "null" if the user has no friends.
+    private void decodeFriends(byte[] line, int start, int end) {
+        handler.onFriendsListStart();
+        if (!equals(line, start, end, "null")) {
+            int p = start;
+            while (p < end) {
+                int nameEnd = indexOf(line, p, end, '.');
+                if (nameEnd < 0) {
+                    break;
+                }
+                int statusEnd = indexOf(line, nameEnd + 1, end, '.');
+                if (statusEnd < 0) {
+                    statusEnd = end;
+                }
+                handler.onFriend(first.set(line, p, nameEnd - p), equals(line, nameEnd + 1, statusEnd, "True"));
+                p = statusEnd + 1;
+            }
+        }
+        handler.onFriendsListEnd();
+    }
+
+    private static int indexOf(byte[] b, int from, int end, char c) {
+        for (int i = from; i < end; i++) {
+            if (b[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] b, int from, int end, String s) {
+        if (end - from < s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (b[from + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] b, int from, int end, String s) {
+        return end - from == s.length() && startsWith(b, from, end, s);
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ServerHandler receives the typed events produced by ServerDecoder.
+ * CharSequence arguments are ByteSlice views into the connection's buffer and are only
+ * valid until the callback returns. Message content is the one field decoded to a String.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+
+public interface ServerHandler {
+    // LOGIN REQUEST=RETRY
+    void onLoginRetry();
+
+    // LOGIN REQUEST=SUCCESS. Messages received while offline follow one at a time through
+    // onOfflineMessage, then onOfflineMessagesEnd. Large backlogs arrive as they are read from the socket.
+    void onLoginSuccess();
+
+    void onOfflineMessage(CharSequence source, String content);
+
+    void onOfflineMessagesEnd(int count);
+
+    // SHOW FRIENDS LIST= is delivered as start, one onFriend per entry, then end.
+    void onFriendsListStart();
+
+    void onFriend(CharSequence name, boolean online);
+
+    void onFriendsListEnd();
+
+    // SEND MESSAGE REQUEST FAILED=destination. The destination user does not exist.
+    void onSendRequestFailed(CharSequence destination);
+
+    // SEND UMESSAGE FAILED=destination. The message is stored until the destination signs in.
+    void onUserOffline(CharSequence destination);
+
+    // SEND UMESSAGE DISCONNECT=destination
+    void onUserDisconnected(CharSequence destination);
+
+    // INCOMING UMESSAGE=source.content
+    void onIncomingMessage(CharSequence source, String content);
+
+    // ADD FRIEND REQUEST=SUCCESS or ADD FRIEND REQUEST=FAILED.name
+    void onAddFriendResult(boolean success, CharSequence name);
+
+    // REMOVE FRIEND REQUEST=SUCCESSFUL or REMOVE FRIEND REQUEST=FAILED
+    void onRemoveFriendResult(boolean success);
+
+    // Any line the decoder does not recognise.
+    void onUnknown(CharSequence line);
+
+    // Called after every line, once its events have been delivered.
+    void onLineEnd();
+
+    // The connection closed. cause is null if the server closed the stream normally.
+    void onDisconnect(IOException cause);
+}
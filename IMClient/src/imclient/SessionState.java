@@ -0,0 +1,73 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * SessionState is the part of a ChatSession that both the event loop and the input thread read and change:
+ * who is logged in, the prompt, and whether the session is reconnecting or closing. It is immutable.
+ * ChatSession publishes each new state through an AtomicReference, so a reader always sees one
+ * consistent state and an update made from one thread is never overwritten by a stale copy from the other.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public final class SessionState {
+    public static final SessionState INITIAL = new SessionState(null, null, null, false, false);
+
+    private final String username;            // Null until login.
+    private final String prompt;            // Drawn after server events and commands.
+    private final String loginRequest;        // Sent again after a reconnect.
+    private final boolean reconnecting;        // From losing the connection until a new one is up.
+    private final boolean closing;            // exit() or close() was called.
+
+    private SessionState(String username, String prompt, String loginRequest, boolean reconnecting, boolean closing) {
+        this.username = username;
+        this.prompt = prompt;
+        this.loginRequest = loginRequest;
+        this.reconnecting = reconnecting;
+        this.closing = closing;
+    }
+
+    public String username() {
+        return username;
+    }
+
+    public String prompt() {
+        return prompt;
+    }
+
+    public String loginRequest() {
+        return loginRequest;
+    }
+
+    public boolean reconnecting() {
+        return reconnecting;
+    }
+
+    public boolean closing() {
+        return closing;
+    }
+
+    // Logging in as user with request. The prompt goes back to the command prompt.
+    public SessionState loggingIn(String user, String request) {
+        return new SessionState(user, user + ": ", request, reconnecting, closing);
+    }
+
+    public SessionState withPrompt(String p) {
+        return p.equals(prompt) ? this : new SessionState(username, p, loginRequest, reconnecting, closing);
+    }
+
+    public SessionState withReconnecting(boolean r) {
+        return r == reconnecting ? this : new SessionState(username, prompt, loginRequest, r, closing);
+    }
+
+    public SessionState withClosing() {
+        return closing ? this : new SessionState(username, prompt, loginRequest, reconnecting, true);
+    }
+
+    public String toString() {
+        return "SessionState[" + username + ", \"" + prompt + "\"" + (reconnecting ? ", reconnecting" : "")
+                + (closing ? ", closing" : "") + "]";
+    }
+}
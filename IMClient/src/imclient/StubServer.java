@@ -0,0 +1,487 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * StubServer is a small in-process stand-in for the IMServer, for measuring the client
+ * without a real server or network. It speaks the same line protocol: logins (with offline
+ * messages in LOGIN REQUEST=SUCCESS.), message delivery, friends lists, add/remove friend
+ * and exit. Every login with a non-empty password succeeds and creates the account if needed.
+ * Clients that offer BinaryProtocol framing at login are switched to it; their frames are turned
+ * back into the request values the text handlers take.
+ * All state lives on one selector thread, so no locking is needed.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class StubServer implements Runnable {
+    private final static Logger logger = Logger.getLogger(StubServer.class.getCanonicalName());
+
+    private final Selector selector;
+    private final ServerSocketChannel acceptor;
+    private final Thread loop;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Map<String, Account> accounts = new HashMap<>();
+    private final FrameEncoder frames = new FrameEncoder();
+    private volatile boolean running = true;
+
+    // Listen on the given port of the loopback interface. Port 0 picks a free port.
+    public StubServer(int port) throws IOException {
+        this.selector = Selector.open();
+        this.acceptor = ServerSocketChannel.open();
+        this.acceptor.bind(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.acceptor.configureBlocking(false);
+        this.acceptor.register(selector, SelectionKey.OP_ACCEPT);
+        this.loop = new Thread(this, "stub-server");
+        this.loop.setDaemon(true);
+        this.loop.start();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 2410;
+        StubServer server = new StubServer(port);
+        System.out.println("Stub IM server listening on 127.0.0.1:" + server.port());
+        server.loop.join();
+    }
+
+    public int port() {
+        return acceptor.socket().getLocalPort();
+    }
+
+    // Create an account so messages to it are accepted before it first logs in.
+    public void addUser(String name) {
+        execute(() -> accounts.computeIfAbsent(name, Account::new));
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    public void run() {
+        try {
+            while (running) {
+                selector.select();
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    if (key.isReadable()) {
+                        client.read();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        client.write();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Stub server stopped", e);
+        } finally {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway.
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = acceptor.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Client client = new Client(channel);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+        }
+    }
+
+    // Interpret one request line from a client.
+    private void handle(Client client, String line) {
+        int eq = line.indexOf('=');
+        if (eq < 0) {
+            return;
+        }
+        String command = line.substring(0, eq);
+        String value = line.substring(eq + 1);
+        switch (command) {
+            case "LOGIN REQUEST":
+                login(client, value);
+                break;
+            case "SEND MESSAGE REQUEST":
+                sendMessage(client, value);
+                break;
+            case "FRIENDS LIST REQUEST":
+                friendsList(client);
+                break;
+            case "ADD FRIEND REQUEST":
+                addFriend(client, value);
+                break;
+            case "REMOVE FRIEND REQUEST":
+                removeFriend(client, value);
+                break;
+            case "EXIT REQUEST":
+                client.close();
+                break;
+            case "PROTOCOL SWITCH":
+                client.binaryIn = true;        // Frames follow this line.
+                break;
+            default:
+                logger.warning("Stub server received unknown request: " + line);
+        }
+    }
+
+    // Interpret one request frame from a client that has switched to binary.
+    private void handle(Client client, ByteBuffer frame) {
+        int opcode = frame.get();
+        switch (opcode) {
+            case BinaryProtocol.SEND_MESSAGE:
+                String destination = field(frame);
+                String source = field(frame);
+                sendMessage(client, destination + "." + source + "." + rest(frame));
+                break;
+            case BinaryProtocol.FRIENDS_LIST:
+                friendsList(client);
+                break;
+            case BinaryProtocol.ADD_FRIEND:
+                addFriend(client, field(frame) + "." + rest(frame));
+                break;
+            case BinaryProtocol.REMOVE_FRIEND:
+                removeFriend(client, field(frame) + "." + rest(frame));
+                break;
+            case BinaryProtocol.EXIT:
+                client.close();
+                break;
+            case BinaryProtocol.LOGIN:
+                login(client, field(frame) + "." + rest(frame));
+                break;
+            default:
+                logger.warning("Stub server received unknown frame: " + opcode);
+        }
+    }
+
+    private static String field(ByteBuffer frame) {
+        int length = BinaryProtocol.readVarint(frame);
+        String s = new String(frame.array(), frame.arrayOffset() + frame.position(), length, StandardCharsets.UTF_8);
+        frame.position(frame.position() + length);
+        return s;
+    }
+
+    private static String rest(ByteBuffer frame) {
+        String s = new String(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining(), StandardCharsets.UTF_8);
+        frame.position(frame.limit());
+        return s;
+    }
+
+    // LOGIN REQUEST=username.password, or username.password.BINARY1 to offer binary framing.
+    private void login(Client client, String value) {
+        int dot = value.indexOf('.');
+        if (dot <= 0 || dot == value.length() - 1) {
+            if (client.binaryOut) {
+                client.send(frames.begin(BinaryProtocol.LOGIN_RETRY).end());
+            } else {
+                client.send("LOGIN REQUEST=RETRY");
+            }
+            return;
+        }
+        Account account = accounts.computeIfAbsent(value.substring(0, dot), Account::new);
+        if (account.client != null) {
+            account.client.close();
+        }
+        account.client = client;
+        client.account = account;
+
+        if (!client.binaryOut && value.lastIndexOf('.') > dot && value.endsWith("." + BinaryProtocol.BINARY1)) {
+            client.send(BinaryProtocol.SWITCH);
+            client.binaryOut = true;
+        }
+        if (client.binaryOut) {
+            client.send(frames.begin(BinaryProtocol.LOGIN_SUCCESS).end());
+            for (String message : account.offline) {
+                int split = message.indexOf('.');
+                client.send(frames.begin(BinaryProtocol.OFFLINE_MESSAGE)
+                        .field(message, 0, split).rest(message, split + 1, message.length()).end());
+            }
+            account.offline.clear();
+            client.send(frames.begin(BinaryProtocol.OFFLINE_END).end());
+            return;
+        }
+
+        // LOGIN REQUEST=SUCCESS.source.content.source.content...
+        StringBuilder reply = new StringBuilder("LOGIN REQUEST=SUCCESS.");
+        for (int i = 0; i < account.offline.size(); i++) {
+            reply.append(i == 0 ? "" : ".").append(account.offline.get(i));
+        }
+        account.offline.clear();
+        client.send(reply.toString());
+    }
+
+    // SEND MESSAGE REQUEST=destination.source.content
+    private void sendMessage(Client client, String value) {
+        int first = value.indexOf('.');
+        int second = first < 0 ? -1 : value.indexOf('.', first + 1);
+        if (second < 0 || client.account == null) {
+            return;
+        }
+        String destination = value.substring(0, first);
+        Account target = accounts.get(destination);
+        if (target == null) {
+            notice(client, "SEND MESSAGE REQUEST FAILED=", BinaryProtocol.SEND_REQUEST_FAILED, destination);
+            return;
+        }
+        String message = value.substring(first + 1);    // source.content
+        if (target.client == null) {
+            target.offline.add(message);
+            notice(client, "SEND UMESSAGE FAILED=", BinaryProtocol.USER_OFFLINE, destination);
+            return;
+        }
+        boolean delivered = target.client.binaryOut
+                ? target.client.send(frames.begin(BinaryProtocol.INCOMING_MESSAGE)
+                        .field(message, 0, second - first - 1).rest(message, second - first, message.length()).end())
+                : target.client.send("INCOMING UMESSAGE=" + message);
+        if (!delivered) {
+            notice(client, "SEND UMESSAGE DISCONNECT=", BinaryProtocol.USER_DISCONNECTED, destination);
+        }
+    }
+
+    // Send a reply that names one user: prefix + name as text, or a frame with opcode.
+    private void notice(Client client, String prefix, int opcode, String name) {
+        if (client.binaryOut) {
+            client.send(frames.begin(opcode).rest(name).end());
+        } else {
+            client.send(prefix + name);
+        }
+    }
+
+    private void friendsList(Client client) {
+        if (client.account == null) {
+            return;
+        }
+        if (client.binaryOut) {
+            frames.begin(BinaryProtocol.FRIENDS);
+            for (String name : client.account.friends) {
+                Account friend = accounts.get(name);
+                frames.field(name).flag(friend != null && friend.client != null);
+            }
+            client.send(frames.end());
+            return;
+        }
+        if (client.account.friends.isEmpty()) {
+            client.send("SHOW FRIENDS LIST=null");
+            return;
+        }
+        StringBuilder reply = new StringBuilder("SHOW FRIENDS LIST=");
+        boolean first = true;
+        for (String name : client.account.friends) {
+            Account friend = accounts.get(name);
+            reply.append(first ? "" : ".").append(name).append(friend != null && friend.client != null ? ".True" : ".False");
+            first = false;
+        }
+        client.send(reply.toString());
+    }
+
+    // ADD FRIEND REQUEST=username.friend
+    private void addFriend(Client client, String value) {
+        String friend = value.substring(value.indexOf('.') + 1);
+        boolean added = client.account != null && accounts.containsKey(friend);
+        if (added) {
+            client.account.friends.add(friend);
+        }
+        if (client.binaryOut) {
+            client.send(frames.begin(BinaryProtocol.ADD_FRIEND_RESULT).flag(added).rest(added ? "" : friend).end());
+        } else {
+            client.send(added ? "ADD FRIEND REQUEST=SUCCESS" : "ADD FRIEND REQUEST=FAILED." + friend);
+        }
+    }
+
+    // REMOVE FRIEND REQUEST=username.friend
+    private void removeFriend(Client client, String value) {
+        String friend = value.substring(value.indexOf('.') + 1);
+        boolean removed = client.account != null && client.account.friends.remove(friend);
+        if (client.binaryOut) {
+            client.send(frames.begin(BinaryProtocol.REMOVE_FRIEND_RESULT).flag(removed).end());
+        } else {
+            client.send(removed ? "REMOVE FRIEND REQUEST=SUCCESSFUL" : "REMOVE FRIEND REQUEST=FAILED");
+        }
+    }
+
+    private static final class Account {
+        final String name;
+        final LinkedHashSet<String> friends = new LinkedHashSet<>();
+        final List<String> offline = new ArrayList<>();        // "source.content" waiting for the next login.
+        Client client;                                        // Logged-in connection, or null if offline.
+
+        Account(String name) {
+            this.name = name;
+        }
+    }
+
+    private final class Client {
+        final SocketChannel channel;
+        final ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+        final ArrayDeque<ByteBuffer> writes = new ArrayDeque<>();
+        byte[] line = new byte[256];
+        int lineLength;
+        SelectionKey key;
+        Account account;
+        boolean binaryIn;                    // The client sends frames.
+        boolean binaryOut;                    // The client is sent frames.
+
+        Client(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() {
+            int n;
+            try {
+                n = channel.read(readBuffer);
+            } catch (IOException e) {
+                n = -1;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                if (binaryIn) {
+                    readFrames();
+                    break;
+                }
+                byte b = readBuffer.get();
+                if (b == '\n') {
+                    handle(this, new String(line, 0, lineLength, StandardCharsets.UTF_8));
+                    lineLength = 0;
+                    if (!key.isValid()) {
+                        return;
+                    }
+                } else if (b != '\r') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                }
+            }
+            readBuffer.clear();
+        }
+
+        // Append what is left of readBuffer to line[] and handle every whole frame in it.
+        void readFrames() {
+            int n = readBuffer.remaining();
+            if (lineLength + n > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + n));
+            }
+            readBuffer.get(line, lineLength, n);
+            lineLength += n;
+            ByteBuffer frames = ByteBuffer.wrap(line, 0, lineLength);
+            while (key.isValid()) {
+                int start = frames.position();
+                int length = BinaryProtocol.readVarint(frames);
+                if (length == -1) {
+                    break;
+                }
+                if (length < 1 || length > BinaryProtocol.MAX_FRAME) {
+                    close();
+                    return;
+                }
+                if (frames.remaining() < length) {
+                    frames.position(start);
+                    break;
+                }
+                int end = frames.position() + length;
+                handle(this, frames.duplicate().limit(end));
+                frames.position(end);
+            }
+            lineLength = frames.remaining();
+            System.arraycopy(line, frames.position(), line, 0, lineLength);
+        }
+
+        // Queue a line for this client. Returns false if the client has already gone.
+        boolean send(String s) {
+            return send(ByteBuffer.wrap((s + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+
+        // Queue a finished frame for this client.
+        boolean send(FrameEncoder frame) {
+            return send(ByteBuffer.wrap(Arrays.copyOfRange(frame.array(), frame.offset(), frame.offset() + frame.length())));
+        }
+
+        private boolean send(ByteBuffer bytes) {
+            if (!key.isValid()) {
+                return false;
+            }
+            writes.add(bytes);
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return true;
+        }
+
+        void write() {
+            try {
+                while (!writes.isEmpty()) {
+                    ByteBuffer head = writes.peek();
+                    channel.write(head);
+                    if (head.hasRemaining()) {
+                        return;
+                    }
+                    writes.poll();
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (account != null && account.client == this) {
+                account.client = null;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already gone.
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * Threads starts the client's worker threads. The client builds for Java 17, which has no virtual
+ * threads, so each is a daemon platform thread. Only a console session starts long-lived ones: one
+ * reading console input and one rendering console output. Headless sessions (ChatClient, BatchSender,
+ * LoadGenerator) start none and run on their engine's event loop, which is what lets one process
+ * host many of them. A process has one console, so it has at most one console session. The only
+ * other threads are EndpointSelector's, one per server name looked up, which end with the lookup.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+public final class Threads {
+    private Threads() {
+    }
+
+    // Start task on a new daemon thread.
+    public static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+}
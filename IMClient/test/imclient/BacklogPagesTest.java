@@ -0,0 +1,62 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BacklogPagesTest holds more messages than fit on the heap and checks they come back in order,
+ * with messages added while the spill file is being read back, and that the file is deleted.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BacklogPagesTest {
+    @Test
+    void keepsOrderAcrossTheSpill() {
+        BacklogPages pages = new BacklogPages(100);
+        List<String> expected = new ArrayList<>();
+        List<String> taken = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String message = "bob: message ☺ " + i;
+            expected.add(message);
+            pages.add(message);
+            if (i % 7 == 0) {
+                taken.add(pages.next());        // Shown while more arrive, as with /more.
+            }
+        }
+        assertEquals(500 - taken.size(), pages.size());
+        String message;
+        while ((message = pages.next()) != null) {
+            taken.add(message);
+        }
+        assertEquals(expected, taken);
+        assertEquals(0, pages.size());
+
+        // Once read out, the next spill starts over.
+        for (int i = 0; i < 50; i++) {
+            pages.add("carol: " + i);
+        }
+        assertEquals("carol: 0", pages.next());
+        pages.clear();
+        assertEquals(0, pages.size());
+        assertNull(pages.next());
+    }
+
+    @Test
+    void longMessagesSpillOneByOne() {
+        BacklogPages pages = new BacklogPages(10);
+        String big = "x".repeat(BacklogReader.MAX_FIELD);
+        pages.add(big);
+        pages.add("short");
+        assertEquals(big, pages.next());
+        assertEquals("short", pages.next());
+        assertNull(pages.next());
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BacklogReaderTest parses offline backlogs in memory, split at every byte, and streamed from a socket,
+ * and checks that truncated content is cut on a character boundary.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BacklogReaderTest {
+    private static final long WAIT_MILLIS = 10_000;
+
+    @Test
+    void feedInMemory() {
+        RecordingHandler handler = new RecordingHandler();
+        BacklogReader reader = new BacklogReader(handler).start(0);
+        byte[] b = "bob.one.carol.two\r.".getBytes(StandardCharsets.UTF_8);
+        reader.feed(b, 0, b.length);
+        assertEquals(2, reader.finish());
+        assertEquals(List.of("offline bob: one", "offline carol: two", "offline end 2"), handler.events());
+    }
+
+    @Test
+    void lastMessageNeedsNoDot() {
+        RecordingHandler handler = new RecordingHandler();
+        BacklogReader reader = new BacklogReader(handler).start(0);
+        byte[] b = "bob.one.carol.two".getBytes(StandardCharsets.UTF_8);
+        reader.feed(b, 0, b.length);
+        assertEquals(2, reader.finish());
+        // A source with no content is dropped.
+        reader.start(0);
+        b = "bob.one.carol.".getBytes(StandardCharsets.UTF_8);
+        reader.feed(b, 0, b.length);
+        assertEquals(1, reader.finish());
+    }
+
+    @Test
+    void splitAtEveryByte() {
+        byte[] b = "SUCCESS.bob.hé ☺.carol.two.".getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= b.length; split++) {
+            RecordingHandler handler = new RecordingHandler();
+            BacklogReader reader = new BacklogReader(handler).start("SUCCESS.".length());
+            reader.onData(ByteBuffer.wrap(b, 0, split));
+            reader.onData(ByteBuffer.wrap(b, split, b.length - split));
+            reader.onEnd();
+            assertEquals(List.of("offline bob: hé ☺", "offline carol: two", "offline end 2", "end"), handler.events(),
+                    "split at " + split);
+        }
+    }
+
+    @Test
+    void longContentIsTruncated() {
+        RecordingHandler handler = new RecordingHandler();
+        BacklogReader reader = new BacklogReader(handler).start(0);
+        byte[] content = new byte[BacklogReader.MAX_FIELD + 100];
+        Arrays.fill(content, (byte) 'x');
+        reader.feed("bob.".getBytes(StandardCharsets.US_ASCII), 0, 4);
+        reader.feed(content, 0, content.length);
+        reader.feed(".carol.ok.".getBytes(StandardCharsets.US_ASCII), 0, 10);
+        reader.finish();
+        List<String> events = handler.events();
+        assertEquals("offline bob: " + "x".repeat(BacklogReader.MAX_FIELD), events.get(0));
+        assertEquals("offline carol: ok", events.get(1));
+    }
+
+    // Multi-byte characters straddling MAX_FIELD are dropped whole.
+    @Test
+    void truncatesOnCharacterBoundary() {
+        for (String tail : new String[] {"é", "☺", "😀"}) {
+            for (int over = 1; over < tail.getBytes(StandardCharsets.UTF_8).length; over++) {
+                String content = "x".repeat(BacklogReader.MAX_FIELD - over) + tail + "yy";
+                RecordingHandler handler = new RecordingHandler();
+                BacklogReader reader = new BacklogReader(handler).start(0);
+                byte[] b = ("bob." + content).getBytes(StandardCharsets.UTF_8);
+                reader.feed(b, 0, b.length);
+                reader.finish();
+                assertEquals("offline bob: " + "x".repeat(BacklogReader.MAX_FIELD - over), handler.events().get(0),
+                        tail + " cut after " + over + " bytes");
+            }
+        }
+    }
+
+    @Test
+    void characterBoundary() {
+        byte[] b = "a☺".getBytes(StandardCharsets.UTF_8);
+        assertEquals(0, BacklogReader.characterBoundary(b, 0));
+        assertEquals(1, BacklogReader.characterBoundary(b, 1));
+        assertEquals(1, BacklogReader.characterBoundary(b, 2));
+        assertEquals(1, BacklogReader.characterBoundary(b, 3));
+        assertEquals(4, BacklogReader.characterBoundary(b, 4));
+    }
+
+    // A backlog streamed from the socket arrives whole, however slowly the handler shows it.
+    @Test
+    void streamsFromSocket() throws Exception {
+        int messages = 2000;
+        StringBuilder line = new StringBuilder("LOGIN REQUEST=SUCCESS.");
+        for (int i = 0; i < messages; i++) {
+            line.append("sender").append(i % 3).append(".message number ").append(i).append('.');
+        }
+        line.append('\n');
+
+        ClientEngine engine = new ClientEngine();
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            RecordingHandler handler = new RecordingHandler();
+            Connection connection = engine.connect("127.0.0.1", server.getLocalPort(), new ServerDecoder(handler));
+            try (Socket socket = server.accept()) {
+                connection.connected().get();
+                OutputStream out = socket.getOutputStream();
+                out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                out.flush();
+
+                awaitCount(handler, "offline end", 1);
+                List<String> expected = new ArrayList<>();
+                expected.add("login success");
+                for (int i = 0; i < messages; i++) {
+                    expected.add("offline sender" + i % 3 + ": message number " + i);
+                }
+                expected.add("offline end " + messages);
+                expected.add("end");
+                assertEquals(expected, handler.events());
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static void awaitCount(RecordingHandler handler, String prefix, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (handler.count(prefix) < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, handler.count(prefix), "events starting \"" + prefix + "\"");
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BatchSenderTest checks the command line and JSON parsing, and runs scripts of commands and JSON
+ * lines against a StubServer in the same process, checking the exit status.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BatchSenderTest {
+    @Test
+    void parsesOptions() {
+        Map<String, String> options = BatchSender.parseOptions(
+                new String[] {"--batch", "-", "--host", "localhost", "--port", "2410", "--protocol", "binary"});
+        assertEquals(Map.of("--batch", "-", "--host", "localhost", "--port", "2410", "--protocol", "binary"), options);
+        assertEquals(Map.of(), BatchSender.parseOptions(new String[0]));
+
+        assertNull(BatchSender.parseOptions(new String[] {"--batch", "-", "--hots", "localhost"}));
+        assertNull(BatchSender.parseOptions(new String[] {"--batch", "-", "--port"}));
+        assertNull(BatchSender.parseOptions(new String[] {"--batch", "--port", "2410"}));
+        assertNull(BatchSender.parseOptions(new String[] {"--user", "alice", "--user", "bob"}));
+    }
+
+    @Test
+    void badArgumentsAreNotLoggedIn() throws IOException {
+        assertEquals(BatchSender.NOT_LOGGED_IN, BatchSender.run(new String[] {"--batch", "-", "--port"}));
+        assertEquals(BatchSender.NOT_LOGGED_IN, BatchSender.run(
+                new String[] {"--batch", "-", "--host", "localhost", "--port", "24x", "--user", "a",
+                        "--password", "p"}));
+        assertEquals(BatchSender.NOT_LOGGED_IN, BatchSender.run(
+                new String[] {"--batch", "-", "--host", "localhost", "--port", "2410", "--protocol", "morse"}));
+        assertEquals(BatchSender.NOT_LOGGED_IN, BatchSender.run(new String[] {"--batch", "no/such/script.txt",
+                "--host", "localhost", "--port", "2410", "--user", "alice", "--password", "pw"}));
+    }
+
+    @Test
+    void parsesJsonObjects() {
+        Map<String, String> expected = new HashMap<>();
+        expected.put("to", "bob");
+        expected.put("text", "say \"hi\"\n\t☺ é");
+        expected.put("n", "-12.5e+3");
+        expected.put("zero", "0");
+        expected.put("ok", "true");
+        expected.put("none", null);
+        assertEquals(expected, BatchSender.parseObject(
+                " {\"to\": \"bob\", \"text\": \"say \\\"hi\\\"\\n\\t\\u263a é\", \"n\": -12.5e+3, \"zero\":0,"
+                        + " \"ok\" : true, \"none\": null} "));
+        assertEquals(Map.of(), BatchSender.parseObject("{ }"));
+
+        for (String bad : List.of("{\"to\": bob}", "{\"n\": 1.}", "{\"n\": -}", "{\"n\": 1e}", "{\"n\": .5}",
+                "{\"n\": 1x}", "{\"to\": \"bob\"", "{\"to\": \"bob}", "{\"to\" \"bob\"}", "{\"to\": \"bob\"} x",
+                "{\"text\": \"\\u26\"}", "[1]")) {
+            assertThrows(IllegalArgumentException.class, () -> BatchSender.parseObject(bad), bad);
+        }
+    }
+
+    @Test
+    void sendsScripts() throws Exception {
+        StubServer server = new StubServer(0);
+        ClientEngine engine = new ClientEngine();
+        try {
+            List<Endpoint> endpoints = List.of(new Endpoint("127.0.0.1", server.port()));
+            // Bob's account exists once he has logged in, so messages to him are stored offline.
+            assertEquals(BatchSender.OK, run(engine, endpoints, "bob", false, ""));
+            String script = "# greetings\n"
+                    + "\n"
+                    + "/msg bob Hi there.\n"
+                    + "  /msg bob   Spaces before the message are dropped.\n"
+                    + "{\"to\": \"bob\", \"text\": \"From JSON.\"}\n"
+                    + "{\"cmd\": \"add\", \"user\": \"bob\"}\n";
+            assertEquals(BatchSender.OK, run(engine, endpoints, "alice", false, script));
+            assertEquals(BatchSender.OK, run(engine, endpoints, "carol", true, script));
+
+            for (String bad : List.of("/msg bob", "/msg b0b hi", "/msg bob ", "/shout bob hi", "/msg nobody hi",
+                    "{\"text\": \"hi\"}", "{\"to\": \"bob\"}", "{\"to\": \"bob\", \"text\": \"two\\nlines\"}",
+                    "{\"cmd\": \"poke\", \"user\": \"bob\"}", "{\"to\": \"bob\", ")) {
+                assertEquals(BatchSender.FAILURES, run(engine, endpoints, "alice", false, bad + "\n"), bad);
+            }
+        } finally {
+            engine.shutdown();
+            server.shutdown();
+        }
+    }
+
+    private static int run(ClientEngine engine, List<Endpoint> endpoints, String user, boolean binary, String script)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new StringReader(script));
+        return new BatchSender().run(engine, endpoints, user, "pw", binary, reader);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BinaryProtocolTest round-trips varints, and frames built by FrameEncoder, both the requests it
+ * translates from text lines and replies decoded by ServerDecoder, and checks the limit on message size.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BinaryProtocolTest {
+    private final FrameEncoder encoder = new FrameEncoder();
+    private final RequestEncoder requests = new RequestEncoder();
+
+    @Test
+    void varints() {
+        byte[] b = new byte[BinaryProtocol.MAX_HEADER];
+        for (int value : new int[] {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE}) {
+            int end = BinaryProtocol.writeVarint(value, b, 0);
+            assertEquals(BinaryProtocol.varintSize(value), end);
+            ByteBuffer buffer = ByteBuffer.wrap(b, 0, end);
+            assertEquals(value, BinaryProtocol.readVarint(buffer));
+            assertEquals(end, buffer.position());
+        }
+    }
+
+    @Test
+    void truncatedAndOverlongVarints() {
+        ByteBuffer truncated = ByteBuffer.wrap(new byte[] {(byte) 0x80, (byte) 0x80});
+        assertEquals(-1, BinaryProtocol.readVarint(truncated));
+        assertEquals(0, truncated.position());
+        byte[] overlong = {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f};
+        assertEquals(-2, BinaryProtocol.readVarint(ByteBuffer.wrap(overlong)));
+    }
+
+    // Each request line becomes a frame with the same fields, and content keeps its dots.
+    @Test
+    void requestsRoundTrip() {
+        assertFields(requests.sendMessage("bob", "alice", "hé. ☺ 😀").toString(),
+                BinaryProtocol.SEND_MESSAGE, 2, "bob", "alice", "hé. ☺ 😀");
+        assertFields(requests.login("alice", "pass.word").toString(), BinaryProtocol.LOGIN, 1, "alice", "pass.word");
+        assertFields(requests.friendsList("alice").toString(), BinaryProtocol.FRIENDS_LIST, 0, "alice");
+        assertFields(requests.addFriend("alice", "bob", 0, 3).toString(), BinaryProtocol.ADD_FRIEND, 1, "alice", "bob");
+        assertFields(requests.removeFriend("alice", "bob", 0, 3).toString(), BinaryProtocol.REMOVE_FRIEND, 1, "alice", "bob");
+        assertFields(requests.exit("alice").toString(), BinaryProtocol.EXIT, 0, "alice");
+        assertFalse(encoder.request("HELLO=alice"));
+    }
+
+    @Test
+    void longFrameHeader() {
+        String content = "x".repeat(20_000);
+        assertFields(requests.sendMessage("bob", "alice", content).toString(), BinaryProtocol.SEND_MESSAGE, 2,
+                "bob", "alice", content);
+    }
+
+    // Messages are framed from their fields, and anything that would not fit in a frame is refused.
+    @Test
+    void messageFramesFitTheLimit() {
+        encoder.begin(BinaryProtocol.SEND_MESSAGE).field("bob").field("alice").rest("hé. ☺").end();
+        byte[] line = encoder.array().clone();
+        int offset = encoder.offset(), length = encoder.length();
+        assertFields(requests.sendMessage("bob", "alice", "hé. ☺").toString(), BinaryProtocol.SEND_MESSAGE, 2,
+                "bob", "alice", "hé. ☺");
+        assertEquals(length, encoder.length());
+        assertEquals(ByteBuffer.wrap(line, offset, length), ByteBuffer.wrap(encoder.array(), encoder.offset(), length));
+        assertEquals(1 + 4 + 6 + "hé. ☺".getBytes(StandardCharsets.UTF_8).length, encoder.payloadLength());
+
+        String most = "x".repeat(ChatSession.MAX_CONTENT);
+        assertTrue(ChatSession.fits(most, 0, most.length()));
+        assertFalse(ChatSession.fits(most + "é", 0, most.length() + 1));
+        assertTrue(ChatSession.fits(most + "é", 2, most.length() + 1));
+        String wide = "☺".repeat(ChatSession.MAX_CONTENT / 3 + 1);
+        assertFalse(ChatSession.fits(wide, 0, wide.length()));
+    }
+
+    // Replies built with FrameEncoder decode to the same events as their text lines.
+    @Test
+    void repliesRoundTrip() {
+        assertEquals(List.of("incoming bob: a.b ☺", "end"),
+                decode(encoder.begin(BinaryProtocol.INCOMING_MESSAGE).field("bob").rest("a.b ☺").end()));
+        assertEquals(List.of("user offline bob", "end"), decode(encoder.begin(BinaryProtocol.USER_OFFLINE).rest("bob").end()));
+        assertEquals(List.of("user disconnected bob", "end"),
+                decode(encoder.begin(BinaryProtocol.USER_DISCONNECTED).rest("bob").end()));
+        assertEquals(List.of("send failed ghost", "end"),
+                decode(encoder.begin(BinaryProtocol.SEND_REQUEST_FAILED).rest("ghost").end()));
+        assertEquals(List.of("friends start", "friend bob online", "friend carol offline", "friends end", "end"),
+                decode(encoder.begin(BinaryProtocol.FRIENDS).field("bob").flag(true).field("carol").flag(false).end()));
+        assertEquals(List.of("add failed bob", "end"),
+                decode(encoder.begin(BinaryProtocol.ADD_FRIEND_RESULT).flag(false).rest("bob").end()));
+        assertEquals(List.of("remove success", "end"),
+                decode(encoder.begin(BinaryProtocol.REMOVE_FRIEND_RESULT).flag(true).end()));
+        assertEquals(List.of("unknown frame 127", "end"), decode(encoder.begin(0x7f).end()));
+    }
+
+    // LOGIN_SUCCESS, then one frame per offline message, then OFFLINE_END with the count.
+    @Test
+    void offlineBacklog() {
+        RecordingHandler handler = new RecordingHandler();
+        ServerDecoder decoder = new ServerDecoder(handler);
+        decoder.decode(frame(encoder.begin(BinaryProtocol.LOGIN_SUCCESS).end()));
+        decoder.decode(frame(encoder.begin(BinaryProtocol.OFFLINE_MESSAGE).field("bob").rest("one.two").end()));
+        decoder.decode(frame(encoder.begin(BinaryProtocol.OFFLINE_MESSAGE).field("carol").rest("three").end()));
+        decoder.decode(frame(encoder.begin(BinaryProtocol.OFFLINE_END).end()));
+        assertEquals(List.of("login success", "offline bob: one.two", "offline carol: three", "offline end 2", "end"),
+                handler.events());
+    }
+
+    // The frame's opcode and fields, read back with readVarint, must match the request line's.
+    private void assertFields(String line, int opcode, int prefixed, String... fields) {
+        assertTrue(encoder.request(line), line);
+        ByteBuffer frame = ByteBuffer.wrap(encoder.array(), encoder.offset(), encoder.length());
+        int length = BinaryProtocol.readVarint(frame);
+        assertEquals(frame.remaining(), length);
+        assertEquals(opcode, frame.get() & 0xff);
+        List<String> read = new ArrayList<>();
+        for (int i = 0; i < prefixed; i++) {
+            read.add(utf8(frame, BinaryProtocol.readVarint(frame)));
+        }
+        read.add(utf8(frame, frame.remaining()));
+        assertEquals(List.of(fields), read);
+    }
+
+    private List<String> decode(FrameEncoder frame) {
+        RecordingHandler handler = new RecordingHandler();
+        new ServerDecoder(handler).decode(frame(frame));
+        return handler.events();
+    }
+
+    // The frame without its length header, positioned at the opcode, as the connection passes it on.
+    private static ByteBuffer frame(FrameEncoder frame) {
+        ByteBuffer b = ByteBuffer.wrap(frame.array(), frame.offset(), frame.length());
+        int length = BinaryProtocol.readVarint(b);
+        assertEquals(b.remaining(), length);
+        return b.slice();
+    }
+
+    private static String utf8(ByteBuffer b, int length) {
+        byte[] bytes = new byte[length];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
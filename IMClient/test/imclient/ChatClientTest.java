@@ -0,0 +1,53 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ChatClientTest runs two clients against a StubServer in the same process: requests fail until
+ * login, and a message is delivered, confirmed and passed to the other client's listener.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ChatClientTest {
+    @Test
+    void requestsWaitForLogin() throws Exception {
+        StubServer server = new StubServer(0);
+        try (ChatClient alice = new ChatClient(); ChatClient bob = new ChatClient()) {
+            CompletableFuture<String> received = new CompletableFuture<>();
+            bob.setListener((source, content) -> received.complete(source + ": " + content));
+            bob.connect("127.0.0.1", server.port()).join();
+            assertTrue(bob.login("bob", "pw").join());
+
+            alice.setConfirmDelay(20, TimeUnit.MILLISECONDS);
+            alice.connect("127.0.0.1", server.port()).join();
+            notLoggedIn(alice.sendMessage("bob", "Too soon."));
+            notLoggedIn(alice.addFriend("bob"));
+            notLoggedIn(alice.friends());
+            assertTrue(alice.login("alice", "pw").join());
+
+            assertEquals(SendResult.DELIVERED, alice.sendMessage("bob", "Hi!").get(10, TimeUnit.SECONDS));
+            assertEquals("alice: Hi!", received.get(10, TimeUnit.SECONDS));
+            assertTrue(alice.addFriend("bob").get(10, TimeUnit.SECONDS));
+            assertTrue(alice.friends().get(10, TimeUnit.SECONDS).containsKey("bob"));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    private static void notLoggedIn(CompletableFuture<?> result) {
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * CommandTableTest checks that a line runs the command its first token names, with the offset of its
+ * arguments, and that names only match whole tokens.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CommandTableTest {
+    private final List<String> ran = new ArrayList<>();
+    private final CommandTable table = new CommandTable();
+
+    private CommandTable.Command record(String name) {
+        return (line, args) -> ran.add(name + " " + line.substring(args));
+    }
+
+    @Test
+    void dispatchesByFirstToken() {
+        table.register("/add", record("add")).register("/addall", record("addall"));
+        assertTrue(table.dispatch("/add bob"));
+        assertTrue(table.dispatch("/addall bob carol"));
+        assertTrue(table.dispatch("/add"));
+        assertEquals(List.of("add bob", "addall bob carol", "add "), ran);
+    }
+
+    @Test
+    void unknownCommands() {
+        table.register("/add", record("add"));
+        assertFalse(table.dispatch("/ad bob"));
+        assertFalse(table.dispatch("/adds bob"));
+        assertFalse(table.dispatch("hello"));
+        assertFalse(table.dispatch(""));
+        assertEquals(List.of(), ran);
+    }
+
+    // More commands than the initial arrays hold, listed in registration order.
+    @Test
+    void growsAndListsNames() {
+        String[] names = new String[20];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "/c" + i;
+            table.register(names[i], record(names[i]));
+        }
+        assertArrayEquals(names, table.names());
+        assertTrue(table.dispatch("/c19 x"));
+        assertEquals(List.of("/c19 x"), ran);
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ConnectionTest runs a Connection against a loopback socket. Lines arriving in pieces, or longer than
+ * the read buffer, come out whole, and lines sent faster than the server reads survive partial writes.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionTest {
+    private static final long WAIT_MILLIS = 10_000;
+
+    private final Lines lines = new Lines();
+    private ClientEngine engine;
+    private ServerSocket server;
+
+    @BeforeEach
+    void start() throws IOException {
+        engine = new ClientEngine();
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        engine.shutdown();
+        server.close();
+    }
+
+    // Lines split across reads, one byte at a time, with \r\n or \n, and longer than the read buffer.
+    @Test
+    void reassemblesLines() throws Exception {
+        String longLine = "é☺".repeat(20_000);
+        Connection connection = engine.connect("127.0.0.1", server.getLocalPort(), lines);
+        try (Socket socket = server.accept()) {
+            connection.connected().get();
+            OutputStream out = socket.getOutputStream();
+            for (byte b : "one\r\ntwo\nthr".getBytes(StandardCharsets.UTF_8)) {
+                out.write(b);
+                out.flush();
+            }
+            out.write(("ee\n\n" + longLine + "\r\nlast\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            lines.await(6);
+            assertEquals(List.of("one", "two", "three", "", longLine, "last"), lines.get());
+        }
+    }
+
+    // A megabyte of lines is sent before the server reads any, so the socket fills and writes are partial.
+    @Test
+    void survivesPartialWrites() throws Exception {
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            sent.add(i + " " + "x☺".repeat(2500 + i));
+        }
+        Connection connection = engine.connect("127.0.0.1", server.getLocalPort(), lines);
+        try (Socket socket = server.accept()) {
+            for (String line : sent) {
+                connection.send(line);
+            }
+            Thread.sleep(100);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (String line : sent) {
+                assertEquals(line, in.readLine());
+            }
+        }
+    }
+
+    // Collects lines decoded as UTF-8.
+    private static class Lines implements LineListener {
+        private final List<String> lines = new ArrayList<>();
+
+        public synchronized void onLine(Connection connection, byte[] line, int off, int len) {
+            lines.add(new String(line, off, len, StandardCharsets.UTF_8));
+            notifyAll();
+        }
+
+        public void onClose(Connection connection, IOException cause) {
+        }
+
+        synchronized List<String> get() {
+            return new ArrayList<>(lines);
+        }
+
+        synchronized void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+            while (lines.size() < count && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ConsoleRendererTest holds the console in its first write while more output queues up, then checks
+ * that the backlog is written as one frame, drawing only the newest prompt, and that text past
+ * MAX_PENDING is dropped and reported.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ConsoleRendererTest {
+    private static final String NL = System.lineSeparator();
+
+    private final Console console = new Console();
+    private final ConsoleRenderer renderer = new ConsoleRenderer(console, StandardCharsets.UTF_8);
+
+    // Start a frame and wait until the render thread is stuck writing it.
+    private void holdConsole() throws InterruptedException {
+        renderer.println("first");
+        assertTrue(console.entered.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void backlogIsOneFrameWithTheNewestPrompt() throws InterruptedException {
+        holdConsole();
+        renderer.println("one");
+        renderer.prompt("To bob: ");
+        renderer.println("two");
+        renderer.prompt("To carol: ");
+        console.release.countDown();
+        renderer.close();
+        assertEquals("first" + NL + "one" + NL + "two" + NL + "To carol: ", console.text());
+        assertEquals(2, console.writes);
+    }
+
+    @Test
+    void overflowIsDroppedAndReported() throws InterruptedException {
+        holdConsole();
+        String big = "a".repeat(ConsoleRenderer.MAX_PENDING - 100);
+        renderer.println(big);
+        renderer.println("kept");
+        for (int i = 0; i < 3; i++) {
+            renderer.println("z".repeat(200));
+        }
+        renderer.println("after");
+        console.release.countDown();
+        renderer.close();
+        assertEquals("first" + NL + NL + "[3 lines not shown]" + NL + big + NL + "kept" + NL + "after" + NL, console.text());
+    }
+
+    @Test
+    void closedRendererDropsOutput() {
+        renderer.println("shown");
+        console.release.countDown();
+        renderer.close();
+        renderer.println("too late");
+        renderer.prompt("> ");
+        assertEquals("shown" + NL, console.text());
+    }
+
+    // Collects output. The first write waits for release.
+    private static class Console extends ByteArrayOutputStream {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        int writes;
+
+        public void write(byte[] b, int off, int len) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                writes++;
+                super.write(b, off, len);
+            }
+        }
+
+        synchronized String text() {
+            return toString(StandardCharsets.UTF_8);
+        }
+    }
+}
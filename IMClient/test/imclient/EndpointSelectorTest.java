@@ -0,0 +1,101 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * EndpointSelectorTest checks endpoint and config.txt parsing, that probing puts a listening server
+ * ahead of one that refuses and one with no address, and that a remembered winner is used while fresh.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EndpointSelectorTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void parsesEndpoints() {
+        assertEquals(new Endpoint("localhost", 2410), Endpoint.parse(" localhost:2410 "));
+        assertEquals(new Endpoint("::1", 2410), Endpoint.parse("[::1]:2410"));
+        assertEquals("[::1]:2410", Endpoint.parse("[::1]:2410").toString());
+        for (String bad : List.of("localhost", "localhost:", ":2410", "localhost:port", "localhost:0",
+                "localhost:65536")) {
+            assertThrows(IllegalArgumentException.class, () -> Endpoint.parse(bad), bad);
+        }
+    }
+
+    @Test
+    void readsConfig() throws IOException {
+        assertEquals(List.of(new Endpoint("chat.example.com", 2410)), readConfig("chat.example.com\n2410\n"));
+        assertEquals(List.of(new Endpoint("a.example.com", 2410), new Endpoint("10.0.0.2", 2411)),
+                readConfig("# Servers, fastest first\n\na.example.com:2410\n  10.0.0.2:2411  \n"));
+        assertThrows(IOException.class, () -> readConfig("# nothing here\n"));
+        assertThrows(IllegalArgumentException.class, () -> readConfig("a.example.com:2410\nb.example.com\n"));
+    }
+
+    // The listening server wins, however long the refused port and the name that does not resolve take.
+    @Test
+    void probesEveryEndpointAtOnce() throws IOException {
+        try (ServerSocketChannel listening = ServerSocketChannel.open()) {
+            listening.bind(new InetSocketAddress("127.0.0.1", 0));
+            Endpoint up = new Endpoint("127.0.0.1", listening.socket().getLocalPort());
+            Endpoint refused = new Endpoint("127.0.0.1", freePort());
+            Endpoint unknown = new Endpoint("no-such-host.invalid", 2410);
+            List<Endpoint> ordered = new EndpointSelector(null).probe(List.of(unknown, refused, up));
+            assertEquals(up, ordered.get(0));
+            assertEquals(3, ordered.size());
+        }
+    }
+
+    // While the cache is fresh its endpoint comes first, even one that is down; otherwise the probe decides.
+    @Test
+    void remembersTheWinner() throws IOException {
+        Path cache = dir.resolve("endpoint");
+        try (ServerSocketChannel listening = ServerSocketChannel.open()) {
+            listening.bind(new InetSocketAddress("127.0.0.1", 0));
+            Endpoint up = new Endpoint("127.0.0.1", listening.socket().getLocalPort());
+            Endpoint down = new Endpoint("127.0.0.1", freePort());
+            EndpointSelector selector = new EndpointSelector(cache, 3000, 60_000);
+            selector.remember(down);
+            assertEquals(down + "\n", Files.readString(cache, StandardCharsets.UTF_8));
+            assertEquals(List.of(down, up), selector.order(List.of(up, down)));
+
+            // A winner that is no longer configured, a cache too old to trust or a damaged one is probed past.
+            Endpoint other = new Endpoint("127.0.0.1", freePort());
+            assertEquals(List.of(up, other), selector.order(List.of(other, up)));
+            Files.setLastModifiedTime(cache, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+            assertEquals(List.of(up, down), selector.order(List.of(down, up)));
+            Files.writeString(cache, "not an endpoint");
+            assertEquals(List.of(up, down), selector.order(List.of(down, up)));
+        }
+    }
+
+    private List<Endpoint> readConfig(String text) throws IOException {
+        Path file = dir.resolve("config.txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        return EndpointSelector.readConfig(file);
+    }
+
+    // A port nothing is listening on, most likely.
+    private static int freePort() throws IOException {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            channel.bind(new InetSocketAddress("127.0.0.1", 0));
+            return channel.socket().getLocalPort();
+        }
+    }
+}
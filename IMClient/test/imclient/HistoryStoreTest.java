@@ -0,0 +1,259 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * HistoryStoreTest stores messages in small segments and checks lookups, reopening, compaction on segment
+ * roll, searches while the writer is busy, recovery from a compaction interrupted at each step, and
+ * a store that could not be opened.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HistoryStoreTest {
+    private static final int SEGMENT = 4096;        // The smallest allowed, so a few hundred messages roll it.
+
+    // Segment 1's messages copied into segment -1, below the oldest, then segments 0 and 1 deleted.
+    private static final String SWAP = "move compact-0.tmp segment--0000001.log\n"
+            + "delete segment-00000000.log\ndelete segment-00000001.log\n";
+
+    @TempDir
+    Path directory;
+    @TempDir
+    Path alone;                                    // For opening one segment on its own.
+
+    @Test
+    void lastCountAndSearch() throws IOException {
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 1000)) {
+            store.append("bob", true, "hi bob", 1);
+            store.append("bob", false, "hello alice", 2);
+            store.append("carol", false, "xxé ☺ yy", 3);
+            store.append("bob", true, "[bye bob]", 1, 8, 4);
+            store.flush();
+
+            assertEquals(3, store.count("bob"));
+            assertEquals(0, store.count("dave"));
+            assertEquals(List.of("hello alice", "bye bob"), contents(store.last("bob", 2)));
+            HistoryRecord last = store.last("bob", 1).get(0);
+            assertEquals("bob", last.peer());
+            assertTrue(last.outgoing());
+            assertEquals(4, last.timestamp());
+
+            assertEquals(List.of("bye bob", "hi bob"), contents(store.search("bob", null, 10)));
+            assertEquals(List.of("bye bob"), contents(store.search("bob", null, 1)));
+            assertEquals(List.of("xxé ☺ yy"), contents(store.search("é ☺", "carol", 10)));
+            assertEquals(List.of(), contents(store.search("hello", "carol", 10)));
+        }
+    }
+
+    @Test
+    void reopenKeepsEverySegment() throws IOException {
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 1000)) {
+            for (int i = 0; i < 400; i++) {
+                store.append(i % 2 == 0 ? "bob" : "carol", i % 3 == 0, "message " + i, i);
+            }
+        }
+        assertTrue(segments(directory) > 1, "messages spread over several segments");
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 1000)) {
+            assertEquals(200, store.count("bob"));
+            assertEquals(List.of("message 396", "message 398"), contents(store.last("bob", 2)));
+            assertEquals(List.of("message 397"), contents(store.search("message 397", null, 10)));
+            // Newest first, so the oldest match, in the first segment, comes last.
+            List<String> found = contents(store.search("message 3", "carol", 400));
+            assertEquals("message 3", found.get(found.size() - 1));
+            store.append("bob", true, "after reopen", 400);
+            store.flush();
+            assertEquals(201, store.count("bob"));
+        }
+    }
+
+    @Test
+    void appendAfterCloseIsDropped() throws IOException {
+        HistoryStore store = new HistoryStore(directory, SEGMENT, 1000);
+        store.append("bob", true, "kept", 1);
+        store.close();
+        store.append("bob", true, "dropped", 2);
+        store.flush();
+        try (HistoryStore reopened = new HistoryStore(directory, SEGMENT, 1000)) {
+            assertEquals(List.of("kept"), contents(reopened.last("bob", 10)));
+        }
+    }
+
+    // Each roll compacts once enough sealed messages are beyond the newest maxPerPeer of their conversation.
+    @Test
+    void compactsOnRoll() throws IOException {
+        int messages = 3000;
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 50)) {
+            for (int i = 0; i < messages; i++) {
+                store.append(i % 2 == 0 ? "bob" : "carol", true, "message " + i, i);
+            }
+            store.flush();
+            int kept = store.count("bob");
+            assertTrue(kept >= 50 && kept < messages / 4, "kept " + kept + " of " + messages / 2);
+            List<String> newest = new ArrayList<>();
+            for (int i = messages - 100; i < messages; i += 2) {
+                newest.add("message " + i);
+            }
+            assertEquals(newest, contents(store.last("bob", 50)));
+        }
+        assertTrue(segments(directory) < 10, segments(directory) + " segments left");
+        assertFalse(Files.exists(directory.resolve("compact.manifest")));
+    }
+
+    // Compaction at open: a store reopened with a smaller limit trims what was kept under the larger one.
+    @Test
+    void compactsAtOpen() throws IOException {
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 100_000)) {
+            for (int i = 0; i < 2000; i++) {
+                store.append("bob", true, "message " + i, i);
+            }
+        }
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 100)) {
+            store.flush();
+            int kept = store.count("bob");
+            assertTrue(kept >= 100 && kept < 500, "kept " + kept);
+            assertEquals(List.of("message 1999"), contents(store.last("bob", 1)));
+        }
+    }
+
+    // Searches scan without holding up the writer, and never see a half-written message.
+    @Test
+    void searchWhileWriting() throws Exception {
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 200)) {
+            Thread writer = Threads.start("history-test", () -> {
+                for (int i = 0; i < 5000; i++) {
+                    store.append("bob", true, "message " + i, i);
+                }
+            });
+            while (writer.isAlive()) {
+                for (HistoryRecord record : store.search("message", null, 20)) {
+                    assertTrue(record.content().startsWith("message "), record.content());
+                }
+            }
+            writer.join();
+            store.flush();
+            assertEquals(List.of("message 4999"), contents(store.search("message", null, 1)));
+        }
+    }
+
+    // A committed manifest is finished at open, whether or not its moves were already made.
+    @Test
+    void finishesCommittedCompaction() throws IOException {
+        int total = fillThreeSegments();
+        int inFirst = countIn(directory.resolve("segment-00000000.log"));
+        // Crash after the manifest: segment 1's messages rewritten as segment -1, segments 0 and 1 to go.
+        Files.copy(directory.resolve("segment-00000001.log"), directory.resolve("compact-0.tmp"));
+        Files.writeString(directory.resolve("compact.manifest"), SWAP);
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 100_000)) {
+            assertEquals(total - inFirst, store.count("bob"));
+        }
+        assertEquals(2, segments(directory));
+        assertFalse(Files.exists(directory.resolve("compact.manifest")));
+        assertFalse(Files.exists(directory.resolve("compact-0.tmp")));
+    }
+
+    @Test
+    void finishesCompactionInterruptedDuringRecovery() throws IOException {
+        int total = fillThreeSegments();
+        int inFirst = countIn(directory.resolve("segment-00000000.log"));
+        // The move and the first delete were made before the crash; only the second delete is left.
+        Files.copy(directory.resolve("segment-00000001.log"), directory.resolve("segment--0000001.log"));
+        Files.delete(directory.resolve("segment-00000000.log"));
+        Files.writeString(directory.resolve("compact.manifest"), SWAP);
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 100_000)) {
+            assertEquals(total - inFirst, store.count("bob"));
+        }
+        assertEquals(2, segments(directory));
+    }
+
+    // Without a manifest the compaction never committed: its temporary files go and nothing else changes.
+    @Test
+    void discardsUncommittedCompaction() throws IOException {
+        int total = fillThreeSegments();
+        Files.copy(directory.resolve("segment-00000001.log"), directory.resolve("compact-0.tmp"));
+        Files.writeString(directory.resolve("compact.manifest.tmp"), SWAP);
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 100_000)) {
+            assertEquals(total, store.count("bob"));
+        }
+        assertEquals(3, segments(directory));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    // A file where the directory should be: the store opens empty, drops appends and still closes.
+    @Test
+    void failedOpenFindsNothing() throws IOException {
+        Path file = Files.writeString(directory.resolve("not-a-directory"), "x");
+        HistoryStore store = new HistoryStore(file, SEGMENT, 1000);
+        assertThrows(CompletionException.class, () -> store.opened().join());
+        store.append("bob", true, "dropped", 1);
+        store.flush();
+        assertEquals(0, store.count("bob"));
+        assertEquals(List.of(), contents(store.search("dropped", null, 10)));
+        store.closeAsync().join();
+    }
+
+    // Messages appended while the store is still mapping its segments are kept, after those already there.
+    @Test
+    void appendsWhileOpening() throws IOException {
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 1000)) {
+            store.append("bob", true, "first", 1);
+        }
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 1000)) {
+            store.append("bob", true, "second", 2);
+            store.flush();
+            assertEquals(List.of("first", "second"), contents(store.last("bob", 10)));
+        }
+    }
+
+    // Messages to bob until there are three segments. Returns how many.
+    private int fillThreeSegments() throws IOException {
+        int n = 0;
+        try (HistoryStore store = new HistoryStore(directory, SEGMENT, 100_000)) {
+            while (segments(directory) < 3) {
+                store.append("bob", true, "message " + n++, n);
+                store.flush();
+            }
+            return store.count("bob");
+        }
+    }
+
+    // Messages in one segment file, counted by opening a store on a copy of it alone.
+    private int countIn(Path segment) throws IOException {
+        Files.copy(segment, alone.resolve("segment-00000000.log"));
+        try (HistoryStore store = new HistoryStore(alone, SEGMENT, 100_000)) {
+            return store.count("bob");
+        }
+    }
+
+    private static int segments(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return (int) files.filter(p -> p.getFileName().toString().startsWith("segment-")).count();
+        }
+    }
+
+    private static List<String> contents(List<HistoryRecord> records) {
+        List<String> contents = new ArrayList<>();
+        for (HistoryRecord record : records) {
+            contents.add(record.content());
+        }
+        return contents;
+    }
+}
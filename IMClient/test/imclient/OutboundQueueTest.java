@@ -0,0 +1,159 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * OutboundQueueTest checks the BLOCK and REJECT policies of a full queue, and, through a Connection
+ * on a loopback socket, that the first line of a burst waits out the linger time before it is written
+ * unless a full batch is waiting.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class OutboundQueueTest {
+    private static final long LINGER_MILLIS = 300;
+
+    @Test
+    void rejectRefusesWhenFull() {
+        OutboundQueue queue = new OutboundQueue(2, 1, 0, TimeUnit.MILLISECONDS, OutboundQueue.Policy.REJECT);
+        assertTrue(queue.offer("a"));
+        assertTrue(queue.offer("b"));
+        assertFalse(queue.offer("c"));
+        assertEquals(2, queue.size());
+        assertEquals("a", queue.poll());
+        assertTrue(queue.offer("c"));
+    }
+
+    @Test
+    void blockWaitsForRoom() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(1, 1, 0, TimeUnit.MILLISECONDS, OutboundQueue.Policy.BLOCK);
+        assertTrue(queue.offer("a"));
+        // tryOffer never waits, whatever the policy.
+        assertFalse(queue.tryOffer("b"));
+
+        AtomicBoolean offered = new AtomicBoolean();
+        Thread producer = new Thread(() -> offered.set(queue.offer("b")));
+        producer.start();
+        Thread.sleep(100);
+        assertTrue(producer.isAlive(), "producer waits while the queue is full");
+        assertEquals("a", queue.poll());
+        producer.join(5000);
+        assertTrue(offered.get());
+        assertEquals("b", queue.poll());
+    }
+
+    @Test
+    void interruptedProducerGivesUp() throws InterruptedException {
+        OutboundQueue queue = new OutboundQueue(1, 1, 0, TimeUnit.MILLISECONDS, OutboundQueue.Policy.BLOCK);
+        queue.offer("a");
+        AtomicBoolean offered = new AtomicBoolean(true);
+        Thread producer = new Thread(() -> offered.set(queue.offer("b")));
+        producer.start();
+        Thread.sleep(50);
+        producer.interrupt();
+        producer.join(5000);
+        assertFalse(offered.get());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void rejectsBadSettings() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new OutboundQueue(0, 1, 0, TimeUnit.MILLISECONDS, OutboundQueue.Policy.BLOCK));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OutboundQueue(1, 0, 0, TimeUnit.MILLISECONDS, OutboundQueue.Policy.BLOCK));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OutboundQueue(1, 1, -1, TimeUnit.MILLISECONDS, OutboundQueue.Policy.BLOCK));
+    }
+
+    // The first line of a burst is held for the linger time; the rest of the burst goes with it.
+    @Test
+    void lingerDelaysTheFirstLine() throws Exception {
+        OutboundQueue queue = new OutboundQueue(64, 4, LINGER_MILLIS, TimeUnit.MILLISECONDS, OutboundQueue.Policy.BLOCK);
+        try (Loopback loopback = new Loopback(queue)) {
+            long start = System.nanoTime();
+            loopback.connection.send("one");
+            loopback.connection.send("two");
+            Thread.sleep(LINGER_MILLIS / 3);
+            assertEquals(0, loopback.socket.getInputStream().available(), "written before the linger time");
+            assertEquals("one", loopback.in.readLine());
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(LINGER_MILLIS));
+            assertEquals("two", loopback.in.readLine());
+        }
+    }
+
+    // Once a full batch is waiting it is written without sitting out the rest of the linger.
+    @Test
+    void fullBatchSkipsTheLinger() throws Exception {
+        OutboundQueue queue = new OutboundQueue(64, 4, 60, TimeUnit.SECONDS, OutboundQueue.Policy.BLOCK);
+        try (Loopback loopback = new Loopback(queue)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 4; i++) {
+                loopback.connection.send("line " + i);
+            }
+            for (int i = 0; i < 4; i++) {
+                assertEquals("line " + i, loopback.in.readLine());
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+        }
+    }
+
+    // More lines than fit in one batch still go out, in order.
+    @Test
+    void writesSeveralBatches() throws Exception {
+        OutboundQueue queue = new OutboundQueue(64, 2, 0, TimeUnit.MILLISECONDS, OutboundQueue.Policy.BLOCK);
+        try (Loopback loopback = new Loopback(queue)) {
+            for (int i = 0; i < 9; i++) {
+                assertTrue(loopback.connection.send("line " + i));
+            }
+            for (int i = 0; i < 9; i++) {
+                assertEquals("line " + i, loopback.in.readLine());
+            }
+        }
+    }
+
+    // A Connection using the given queue, and the server's end of its socket.
+    private static class Loopback implements LineListener, AutoCloseable {
+        final ClientEngine engine = new ClientEngine();
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        final Connection connection;
+        final Socket socket;
+        final BufferedReader in;
+
+        Loopback(OutboundQueue queue) throws Exception {
+            connection = engine.connect("127.0.0.1", server.getLocalPort(), this, queue);
+            socket = server.accept();
+            connection.connected().get();
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        public void onLine(Connection connection, byte[] line, int off, int len) {
+        }
+
+        public void onClose(Connection connection, IOException cause) {
+        }
+
+        public void close() throws IOException {
+            engine.shutdown();
+            socket.close();
+            server.close();
+        }
+    }
+}
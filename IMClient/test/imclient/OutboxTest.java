@@ -0,0 +1,144 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * OutboxTest checks how replies and failure notices confirm sent messages, what a reconnect sends
+ * again, and what a full outbox forgets.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+
+class OutboxTest {
+    private final Outbox outbox = new Outbox(4);
+    private long seq;
+
+    // Add a message with a receipt and give it the next sequence number, as ChatSession does.
+    private CompletableFuture<SendResult> send(String destination, String line) {
+        CompletableFuture<SendResult> receipt = new CompletableFuture<>();
+        Outbox.Entry entry = outbox.add(destination, line, receipt, seq * 1000);
+        if (entry != null && entry != Outbox.FULL) {
+            outbox.sent(entry, ++seq);
+        }
+        return receipt;
+    }
+
+    @Test
+    void replyConfirmsEarlierMessages() {
+        CompletableFuture<SendResult> first = send("bob", "m1");
+        CompletableFuture<SendResult> second = send("bob", "m2");
+        long request = ++seq;                    // A friends list request queued after both.
+        CompletableFuture<SendResult> third = send("carol", "m3");
+
+        outbox.confirmBefore(request);
+        assertEquals(SendResult.DELIVERED, first.getNow(null));
+        assertEquals(SendResult.DELIVERED, second.getNow(null));
+        assertFalse(third.isDone());
+        assertEquals(1, outbox.size());
+        assertTrue(outbox.hasSent());
+    }
+
+    @Test
+    void failureNoticeConfirmsItsMessage() {
+        CompletableFuture<SendResult> bob = send("bob", "m1");
+        CompletableFuture<SendResult> ghost = send("ghost", "m2");
+        CompletableFuture<SendResult> ghostAgain = send("ghost", "m3");
+
+        // The notice names the oldest message to ghost; bob's, before it, was delivered.
+        assertTrue(outbox.confirmFailed("ghost", SendResult.UNKNOWN_USER));
+        assertEquals(SendResult.DELIVERED, bob.getNow(null));
+        assertEquals(SendResult.UNKNOWN_USER, ghost.getNow(null));
+        assertFalse(ghostAgain.isDone());
+
+        assertTrue(outbox.confirmFailed("ghost", SendResult.STORED_OFFLINE));
+        assertEquals(SendResult.STORED_OFFLINE, ghostAgain.getNow(null));
+        assertFalse(outbox.confirmFailed("ghost", SendResult.UNKNOWN_USER));
+        assertEquals(0, outbox.size());
+    }
+
+    @Test
+    void holdAndRelease() {
+        send("bob", "m1");
+        send("carol", "m2");
+        outbox.hold();
+        assertFalse(outbox.hasSent());
+        // While holding, a new message waits for release().
+        assertNull(outbox.add("bob", "m3", null));
+
+        List<String> resent = new ArrayList<>();
+        List<Long> sentAt = new ArrayList<>();
+        assertEquals(3, outbox.release(entry -> {
+            resent.add(entry.line);
+            sentAt.add(entry.sentAt);
+            return ++seq;
+        }));
+        assertEquals(List.of("m1", "m2", "m3"), resent);
+        // Sent again, but still timed from when they were first sent.
+        assertEquals(List.of(0L, 1000L), sentAt.subList(0, 2));
+        assertTrue(outbox.hasSent());
+    }
+
+    @Test
+    void releaseKeepsWhatCouldNotBeSent() {
+        send("bob", "m1");
+        send("bob", "m2");
+        outbox.hold();
+        assertEquals(1, outbox.release(entry -> entry.line.equals("m1") ? ++seq : -1));
+        outbox.hold();
+        List<String> resent = new ArrayList<>();
+        outbox.release(entry -> {
+            resent.add(entry.line);
+            return ++seq;
+        });
+        assertEquals(List.of("m1", "m2"), resent);
+    }
+
+    @Test
+    void fullOutbox() {
+        for (int i = 0; i < 4; i++) {
+            send("bob", "m" + i);
+        }
+        assertTrue(outbox.full());
+        // A message someone waits on is refused rather than forgetting another.
+        assertSame(Outbox.FULL, outbox.add("bob", "m4", new CompletableFuture<>()));
+
+        // One nobody waits on pushes out the oldest. That happened while connected, so it isn't reported.
+        Outbox plain = new Outbox(2);
+        plain.add("bob", "m1");
+        plain.add("bob", "m2");
+        plain.add("bob", "m3");
+        assertEquals(0, plain.takeDropped());
+        plain.hold();
+        plain.add("bob", "m4");
+        plain.add("bob", "m5");
+        assertEquals(2, plain.takeDropped());
+        assertEquals(0, plain.takeDropped());
+    }
+
+    @Test
+    void forgottenMessagesFailTheirReceipts() {
+        Outbox small = new Outbox(1);
+        CompletableFuture<SendResult> first = new CompletableFuture<>();
+        small.add("bob", "m1", first);
+        small.add("bob", "m2");
+        assertTrue(first.isCompletedExceptionally());
+
+        CompletableFuture<SendResult> second = send("bob", "m1");
+        outbox.fail(new IOException("Session closed"));
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(0, outbox.size());
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * PeerSchedulerTest checks the round-robin order, per-peer order with several producers racing the
+ * consumer, and that close() accounts for every message, including those from producers racing it.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class PeerSchedulerTest {
+    @Test
+    void takesTurnsBetweenPeers() {
+        PeerScheduler<String> scheduler = new PeerScheduler<>(2, 16);
+        for (int i = 0; i < 5; i++) {
+            scheduler.add("bob", "b" + i, false);
+        }
+        scheduler.add("carol", "c0", false);
+        scheduler.add("carol", "c1", false);
+        scheduler.add("carol", "c2", false);
+
+        List<String> order = new ArrayList<>();
+        String item;
+        while ((item = scheduler.next()) != null) {
+            order.add(item);
+        }
+        assertEquals(List.of("b0", "b1", "c0", "c1", "b2", "b3", "c2", "b4"), order);
+        assertTrue(scheduler.isEmpty());
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    void countsQueuedMessages() {
+        PeerScheduler<String> scheduler = new PeerScheduler<>();
+        scheduler.add("bob", "b0", false);
+        scheduler.add("bob", "b1", false);
+        scheduler.add("carol", "c0", false);
+        assertEquals(2, scheduler.queued("bob"));
+        assertEquals(3, scheduler.size());
+        assertEquals("b0", scheduler.peek());
+        assertEquals("b0", scheduler.next());
+        assertEquals(1, scheduler.queued("bob"));
+        assertEquals(0, scheduler.queued("dave"));
+    }
+
+    @Test
+    void fullPeerRefusesWithoutWaiting() {
+        PeerScheduler<String> scheduler = new PeerScheduler<>(4, 2);
+        assertTrue(scheduler.add("bob", "b0", false));
+        assertTrue(scheduler.add("bob", "b1", false));
+        assertFalse(scheduler.add("bob", "b2", false));
+        // Other peers have room of their own.
+        assertTrue(scheduler.add("carol", "c0", false));
+        scheduler.next();
+        assertTrue(scheduler.add("bob", "b2", false));
+    }
+
+    @Test
+    void closeDropsQueuedAndRefusesNew() {
+        PeerScheduler<String> scheduler = new PeerScheduler<>();
+        scheduler.add("bob", "b0", false);
+        scheduler.add("carol", "c0", false);
+        List<String> dropped = new ArrayList<>();
+        scheduler.close(dropped::add);
+        assertEquals(Set.of("b0", "c0"), new HashSet<>(dropped));
+        assertFalse(scheduler.add("bob", "b1", true));
+        assertNull(scheduler.next());
+    }
+
+    // Four producers send to the same peers while the consumer drains, so peers are retired and
+    // replaced under them. Each producer's messages to a peer must come out once each, in order.
+    @Test
+    void keepsOrderWithFourProducers() throws InterruptedException {
+        int producers = 4, peers = 4, messages = 20_000;
+        for (int round = 0; round < 20; round++) {
+            PeerScheduler<int[]> scheduler = new PeerScheduler<>(4, 64);
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < producers; t++) {
+                int producer = t;
+                threads.add(Threads.start("producer", () -> {
+                    for (int n = 0; n < messages; n++) {
+                        scheduler.add("p" + n % peers, new int[] {producer, n}, true);
+                    }
+                }));
+            }
+            int[][] last = new int[peers][producers];
+            for (int[] row : last) {
+                Arrays.fill(row, -1);
+            }
+            for (int taken = 0; taken < producers * messages; ) {
+                int[] m = scheduler.next();
+                if (m == null) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                taken++;
+                int peer = m[1] % peers;
+                assertTrue(m[1] > last[peer][m[0]], "producer " + m[0] + " sent " + m[1] + " after " + last[peer][m[0]]);
+                last[peer][m[0]] = m[1];
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertNull(scheduler.next());
+        }
+    }
+
+    // Every message a producer was told was queued is either taken or passed to close(), exactly once.
+    @Test
+    void closeRacingProducersLosesNothing() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            PeerScheduler<Integer> scheduler = new PeerScheduler<>(4, 64);
+            AtomicInteger ids = new AtomicInteger();
+            AtomicInteger queued = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                threads.add(Threads.start("producer", () -> {
+                    for (int n = 0; n < 2000; n++) {
+                        if (scheduler.add("p" + n % 3, ids.incrementAndGet(), true)) {
+                            queued.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            Set<Integer> seen = new HashSet<>();
+            for (int i = 0; i < 500; i++) {
+                Integer m = scheduler.next();
+                assertTrue(m == null || seen.add(m), "taken twice");
+            }
+            List<Integer> dropped = new ArrayList<>();
+            scheduler.close(dropped::add);
+            for (Thread t : threads) {
+                t.join();
+            }
+            for (Integer m : dropped) {
+                assertTrue(seen.add(m), "dropped after it was taken");
+            }
+            assertEquals(queued.get(), seen.size(), "round " + round);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * PresenceCacheTest checks when the cached friends list may be shown (within the time-to-live, until
+ * invalidated) and how statuses seen outside the list move friends between online and offline.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class PresenceCacheTest {
+    private static final long TTL = TimeUnit.SECONDS.toNanos(60);
+
+    private final PresenceCache cache = new PresenceCache(60, TimeUnit.SECONDS);
+
+    private void load(long now, String... friends) {
+        cache.beginLoad();
+        for (String friend : friends) {
+            cache.put(friend.substring(1), friend.charAt(0) == '+');
+        }
+        cache.endLoad(now);
+    }
+
+    @Test
+    void freshUntilTheTtlPasses() {
+        long now = 1_000_000;
+        assertFalse(cache.fresh(now), "nothing loaded yet");
+        load(now, "+bob", "-carol");
+        assertTrue(cache.fresh(now));
+        assertTrue(cache.fresh(now + TTL - 1));
+        assertFalse(cache.fresh(now + TTL));
+        load(now + TTL, "+bob");
+        assertTrue(cache.fresh(now + TTL));
+    }
+
+    // System.nanoTime() may be negative or wrap; only the difference counts.
+    @Test
+    void ttlSurvivesNanoTimeWrapping() {
+        long now = Long.MAX_VALUE - 10;
+        load(now, "+bob");
+        assertTrue(cache.fresh(now + 20));
+        assertFalse(cache.fresh(now + TTL));
+    }
+
+    @Test
+    void invalidateForcesAReload() {
+        load(0, "+bob");
+        cache.invalidate();
+        assertFalse(cache.fresh(1));
+        load(2, "-bob");
+        assertTrue(cache.fresh(3));
+        assertEquals(List.of("bob"), list(cache.offline()));
+    }
+
+    // A new list replaces the old one rather than merging with it.
+    @Test
+    void loadReplacesEverything() {
+        load(0, "+bob", "-carol");
+        load(1, "+dave");
+        assertEquals(List.of("dave"), list(cache.online()));
+        assertEquals(List.of(), list(cache.offline()));
+        assertFalse(cache.contains("bob"));
+    }
+
+    @Test
+    void updatesMoveOnlyFriends() {
+        load(0, "+bob", "-carol", "+dave");
+        cache.update("bob", false);
+        cache.update("carol", true);
+        cache.update("mallory", true);        // Not a friend: ignored.
+        assertEquals(List.of("dave", "carol"), list(cache.online()));
+        assertEquals(List.of("bob"), list(cache.offline()));
+        assertFalse(cache.contains("mallory"));
+
+        cache.put("erin", false);
+        cache.remove("dave");
+        assertEquals(List.of("carol"), list(cache.online()));
+        assertEquals(List.of("bob", "erin"), list(cache.offline()));
+        // Changes leave the list fresh; only time and invalidate() make it stale.
+        assertTrue(cache.fresh(1));
+    }
+
+    private static List<String> list(Iterable<String> names) {
+        List<String> list = new ArrayList<>();
+        names.forEach(list::add);
+        return list;
+    }
+}
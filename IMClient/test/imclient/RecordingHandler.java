@@ -0,0 +1,103 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * RecordingHandler is a ServerHandler for tests that writes down every event as a short string,
+ * such as "incoming bob: hi", copying the ByteSlice arguments before they are reused.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+class RecordingHandler implements ServerHandler {
+    private final List<String> events = new ArrayList<>();    // Guarded by this: events may come from the event loop.
+
+    synchronized List<String> events() {
+        return new ArrayList<>(events);
+    }
+
+    synchronized int count(String prefix) {
+        int n = 0;
+        for (String event : events) {
+            n += event.startsWith(prefix) ? 1 : 0;
+        }
+        return n;
+    }
+
+    synchronized void clear() {
+        events.clear();
+    }
+
+    protected synchronized void record(String event) {
+        events.add(event);
+    }
+
+    public void onLoginRetry() {
+        record("login retry");
+    }
+
+    public void onLoginSuccess() {
+        record("login success");
+    }
+
+    public void onOfflineMessage(CharSequence source, String content) {
+        record("offline " + source + ": " + content);
+    }
+
+    public void onOfflineMessagesEnd(int count) {
+        record("offline end " + count);
+    }
+
+    public void onFriendsListStart() {
+        record("friends start");
+    }
+
+    public void onFriend(CharSequence name, boolean online) {
+        record("friend " + name + " " + (online ? "online" : "offline"));
+    }
+
+    public void onFriendsListEnd() {
+        record("friends end");
+    }
+
+    public void onSendRequestFailed(CharSequence destination) {
+        record("send failed " + destination);
+    }
+
+    public void onUserOffline(CharSequence destination) {
+        record("user offline " + destination);
+    }
+
+    public void onUserDisconnected(CharSequence destination) {
+        record("user disconnected " + destination);
+    }
+
+    public void onIncomingMessage(CharSequence source, String content) {
+        record("incoming " + source + ": " + content);
+    }
+
+    public void onAddFriendResult(boolean success, CharSequence name) {
+        record("add " + (success ? "success" : "failed " + name));
+    }
+
+    public void onRemoveFriendResult(boolean success) {
+        record("remove " + (success ? "success" : "failed"));
+    }
+
+    public void onUnknown(CharSequence line) {
+        record("unknown " + line);
+    }
+
+    public void onLineEnd() {
+        record("end");
+    }
+
+    public void onDisconnect(IOException cause) {
+        record("disconnect");
+    }
+}
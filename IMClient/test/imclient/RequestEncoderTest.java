@@ -0,0 +1,48 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * RequestEncoderTest checks every request line against the protocol, including fields taken from
+ * part of a longer line, and that the encoder's buffer is reused from one request to the next.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+class RequestEncoderTest {
+    private final RequestEncoder encoder = new RequestEncoder();
+
+    @Test
+    void requests() {
+        assertEquals("LOGIN REQUEST=alice.secret", encoder.login("alice", "secret").toString());
+        assertEquals("SEND MESSAGE REQUEST=bob.alice.hi. there", encoder.sendMessage("bob", "alice", "hi. there").toString());
+        assertEquals("FRIENDS LIST REQUEST=alice", encoder.friendsList("alice").toString());
+        assertEquals("EXIT REQUEST=alice", encoder.exit("alice").toString());
+    }
+
+    // Fields sliced out of the typed line, as MessageThread passes them.
+    @Test
+    void slicedFields() {
+        String typed = "/add bob";
+        assertEquals("ADD FRIEND REQUEST=alice.bob", encoder.addFriend("alice", typed, 5, typed.length()).toString());
+        typed = "/remove carol";
+        assertEquals("REMOVE FRIEND REQUEST=alice.carol", encoder.removeFriend("alice", typed, 8, typed.length()).toString());
+        typed = "> hello";
+        assertEquals("SEND MESSAGE REQUEST=bob.alice.hello", encoder.sendMessage("bob", "alice", typed, 2, typed.length()).toString());
+    }
+
+    @Test
+    void reusesItsBuffer() {
+        CharSequence first = encoder.login("alice", "secret");
+        CharSequence second = encoder.exit("alice");
+        assertSame(first, second);
+        assertEquals("EXIT REQUEST=alice", first.toString());
+        assertEquals("HELLO=", encoder.begin("HELLO=").line().toString());
+    }
+}
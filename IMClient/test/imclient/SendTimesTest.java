@@ -0,0 +1,59 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * SendTimesTest checks which send time a failure notice is matched with: the oldest unconfirmed
+ * message to its destination, never one a reply has already confirmed, across ring growth and
+ * the capacity limit.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SendTimesTest {
+    @Test
+    void noticeTakesTheOldestToItsDestination() {
+        SendTimes times = new SendTimes();
+        times.sent("bob", 1, 100);
+        times.sent("ghost", 2, 200);
+        times.sent("ghost", 3, 300);
+        assertEquals(200, times.reported("ghost"));
+        // bob's message, before it, was processed too.
+        assertEquals(1, times.size());
+        assertEquals(300, times.reported("ghost"));
+        assertEquals(-1, times.reported("ghost"));
+        assertEquals(-1, times.reported("bob"));
+    }
+
+    // A delivered message is dropped with its time, so a later notice is timed from its own message.
+    @Test
+    void replyConfirmsEarlierMessages() {
+        SendTimes times = new SendTimes();
+        times.sent("bob", 1, 100);
+        times.sent("bob", 3, 300);
+        times.confirmBefore(2);                // The reply to a request written between them.
+        assertEquals(300, times.reported("bob"));
+    }
+
+    @Test
+    void growsAndForgetsTheOldestAtCapacity() {
+        SendTimes times = new SendTimes(100);
+        for (int i = 0; i < 250; i++) {
+            times.sent(i % 2 == 0 ? "bob" : "carol", i, i * 10L);
+            if (i == 60) {
+                times.confirmBefore(30);        // While the ring is still growing.
+            }
+        }
+        assertEquals(100, times.size());
+        assertEquals(1500, times.reported("bob"));
+        assertEquals(1510, times.reported("carol"));
+        times.clear();
+        assertEquals(0, times.size());
+        assertEquals(-1, times.reported("bob"));
+    }
+}
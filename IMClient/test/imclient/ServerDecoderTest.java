@@ -0,0 +1,89 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * ServerDecoderTest decodes each server reply of the text protocol and checks the events it produces.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ServerDecoderTest {
+    private final RecordingHandler handler = new RecordingHandler();
+    private final ServerDecoder decoder = new ServerDecoder(handler);
+
+    private List<String> decode(String line) {
+        handler.clear();
+        byte[] b = ("xx" + line + "yy").getBytes(StandardCharsets.UTF_8);
+        // Decode from the middle of the array, as the connection does.
+        decoder.decode(b, 2, b.length - 4);
+        return handler.events();
+    }
+
+    @Test
+    void incomingMessage() {
+        assertEquals(List.of("incoming bob: hi there", "end"), decode("INCOMING UMESSAGE=bob.hi there"));
+        // Only the first dot separates the source; the content may hold more.
+        assertEquals(List.of("incoming bob: a.b.c", "end"), decode("INCOMING UMESSAGE=bob.a.b.c"));
+        assertEquals(List.of("incoming bob: hé ☺", "end"), decode("INCOMING UMESSAGE=bob.hé ☺"));
+        assertEquals(List.of("unknown INCOMING UMESSAGE=bob", "end"), decode("INCOMING UMESSAGE=bob"));
+    }
+
+    @Test
+    void login() {
+        assertEquals(List.of("login retry", "end"), decode("LOGIN REQUEST=RETRY"));
+        assertEquals(List.of("login success", "offline end 0", "end"), decode("LOGIN REQUEST=SUCCESS."));
+        assertEquals(List.of("login success", "offline bob: one", "offline carol: two", "offline end 2", "end"),
+                decode("LOGIN REQUEST=SUCCESS.bob.one.carol.two."));
+        assertEquals(List.of("unknown LOGIN REQUEST=MAYBE", "end"), decode("LOGIN REQUEST=MAYBE"));
+    }
+
+    @Test
+    void friendsList() {
+        assertEquals(List.of("friends start", "friend bob online", "friend carol offline", "friends end", "end"),
+                decode("SHOW FRIENDS LIST=bob.True.carol.False"));
+        assertEquals(List.of("friends start", "friends end", "end"), decode("SHOW FRIENDS LIST=null"));
+    }
+
+    @Test
+    void sendReports() {
+        assertEquals(List.of("send failed ghost", "end"), decode("SEND MESSAGE REQUEST FAILED=ghost"));
+        assertEquals(List.of("user offline bob", "end"), decode("SEND UMESSAGE FAILED=bob"));
+        assertEquals(List.of("user disconnected bob", "end"), decode("SEND UMESSAGE DISCONNECT=bob"));
+    }
+
+    @Test
+    void friendRequests() {
+        assertEquals(List.of("add success", "end"), decode("ADD FRIEND REQUEST=SUCCESS"));
+        assertEquals(List.of("add failed bob", "end"), decode("ADD FRIEND REQUEST=FAILED.bob"));
+        assertEquals(List.of("remove success", "end"), decode("REMOVE FRIEND REQUEST=SUCCESSFUL"));
+        assertEquals(List.of("remove failed", "end"), decode("REMOVE FRIEND REQUEST=FAILED"));
+    }
+
+    @Test
+    void unknownLines() {
+        assertEquals(List.of("unknown HELLO=bob", "end"), decode("HELLO=bob"));
+        assertEquals(List.of("unknown INCOMING UMESSAGE", "end"), decode("INCOMING UMESSAGE"));
+        // A known token must be followed by '=', not just start the line.
+        assertEquals(List.of("unknown LOGIN REQUESTS=RETRY", "end"), decode("LOGIN REQUESTS=RETRY"));
+        assertEquals(List.of("unknown ", "end"), decode(""));
+    }
+
+    @Test
+    void lookup() {
+        for (ServerCommand command : ServerCommand.values()) {
+            byte[] token = command.token().getBytes(StandardCharsets.US_ASCII);
+            assertEquals(command, ServerDecoder.lookup(token, 0, token.length));
+        }
+        byte[] prefix = "LOGIN".getBytes(StandardCharsets.US_ASCII);
+        assertNull(ServerDecoder.lookup(prefix, 0, prefix.length));
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * SessionStressTest checks that a console session loses nothing when it sends and receives heavily at once.
+ * One session prints to an in-memory console while peers flood it with messages, several threads send
+ * to the peers through it, and an input thread keeps switching the prompt, as MessageThread does.
+ * It fails if any sent message is lost, repeated or reordered, if any incoming line is missing or
+ * garbled on the console, or if the console is left showing a prompt other than the last one set.
+ * Runs against a StubServer in the same process; -Dimclient.stress.rounds runs more rounds. Even rounds
+ * switch the session to binary frames.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class SessionStressTest {
+    private static final long QUIET_MILLIS = 200;        // The console is settled once it has written nothing for this long.
+    private static final long ROUND_TIMEOUT_SECONDS = 60;
+    private static final long SWITCH_NANOS = 20_000;        // Time between prompt switches.
+    private static final int ROUNDS = Integer.getInteger("imclient.stress.rounds", 3);
+    private static final int PEERS = 4;
+    private static final int MESSAGES = 2000;                // Sent by each peer and each sender, per round.
+    private static final int SENDERS = 4;
+    private static final Pattern PROMPT = Pattern.compile("#(\\d+): ");
+
+    private final List<String> problems = new ArrayList<>();
+
+    @Test
+    void nothingLost() throws Exception {
+        StubServer server = new StubServer(0);
+        try {
+            for (int round = 1; round <= ROUNDS; round++) {
+                round(server.port(), round, PEERS, MESSAGES, SENDERS);
+            }
+        } finally {
+            server.shutdown();
+        }
+        assertEquals(List.of(), problems);
+    }
+
+    // Each peer sends messages to the console session while senders send messages to each peer through it.
+    private void round(int port, int round, int peerCount, int messages, int senders) throws IOException, InterruptedException {
+        ClientEngine engine = new ClientEngine();
+        Console console = new Console();
+        ConsoleRenderer renderer = new ConsoleRenderer(console, StandardCharsets.UTF_8);
+        CountDownLatch loggedIn = new CountDownLatch(peerCount);
+        CountDownLatch received = new CountDownLatch(peerCount * messages + senders * messages);
+        String user = "user" + letters(round);
+
+        ChatSession session = new ChatSession(engine, null, renderer) {
+            public void onIncomingMessage(CharSequence source, String content) {
+                super.onIncomingMessage(source, content);
+                received.countDown();
+            }
+        };
+        session.setBinaryProtocol(round % 2 == 0);
+        session.connect("127.0.0.1", port);
+        session.login(user, "stress");
+        Peer[] peers = new Peer[peerCount];
+        for (int i = 0; i < peerCount; i++) {
+            peers[i] = new Peer(engine, loggedIn, received);
+            peers[i].connect("127.0.0.1", port);
+            peers[i].login("peer" + letters(round) + letters(i + 1), "stress");
+        }
+        loggedIn.await(ROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        session.sync().join();
+
+        List<Thread> threads = new ArrayList<>();
+        for (Peer peer : peers) {
+            threads.add(Threads.start("stress-peer", () -> {
+                for (int n = 0; n < messages; n++) {
+                    peer.sendMessage(user, "m " + n);
+                }
+            }));
+        }
+        for (int t = 0; t < senders; t++) {
+            int sender = t;
+            threads.add(Threads.start("stress-sender", () -> {
+                for (int n = 0; n < messages; n++) {
+                    String to = peers[n % peerCount].username();
+                    session.sendMessage(to, "s" + sender + " " + n);
+                }
+            }));
+        }
+        // Switch conversations the whole time, then settle on one while messages are still arriving.
+        String last = null;
+        for (int n = 0; received.getCount() > (long) peerCount * messages / 2; n++) {
+            last = "To " + peers[n % peerCount].username() + " #" + n + ": ";
+            session.setPrompt(last);
+            renderer.prompt(last);
+            LockSupport.parkNanos(SWITCH_NANOS);
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        if (!received.await(ROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            problems.add("Round " + round + ": " + received.getCount() + " messages never arrived");
+        }
+        console.awaitQuiet();
+
+        checkSent(round, peers, senders, messages);
+        checkConsole(round, console.text(), peers, messages, last);
+
+        session.exit();
+        for (Peer peer : peers) {
+            peer.exit();
+        }
+        session.closed().handle((v, e) -> null).orTimeout(ROUND_TIMEOUT_SECONDS, TimeUnit.SECONDS).join();
+        renderer.close();
+        engine.shutdown();
+    }
+
+    // Every peer got each sender's messages to it exactly once, in the order they were sent.
+    private void checkSent(int round, Peer[] peers, int senders, int messages) {
+        for (int i = 0; i < peers.length; i++) {
+            for (int s = 0; s < senders; s++) {
+                int expected = 0;
+                for (int n = 0; n < messages; n++) {
+                    expected += n % peers.length == i ? 1 : 0;
+                }
+                int got = peers[i].count("s" + s);
+                if (got != expected) {
+                    problems.add("Round " + round + ": " + peers[i].username() + " got " + got + " messages from sender "
+                            + s + ", expected " + expected);
+                }
+            }
+            problems.addAll(peers[i].disorder);
+        }
+    }
+
+    // Every incoming message is on a line of its own, once and in order, and the last prompt drawn is the last one set.
+    private void checkConsole(int round, String text, Peer[] peers, int messages, String lastPrompt) {
+        Map<String, Integer> next = new HashMap<>();
+        for (Peer peer : peers) {
+            next.put(peer.username(), 0);
+        }
+        int garbled = 0;
+        for (String line : text.split("\n")) {
+            int colon = line.indexOf(": m ");
+            Integer expected = colon < 0 ? null : next.get(line.substring(0, colon));
+            if (expected == null) {
+                garbled += line.contains(": m ") || line.contains("lines not shown") ? 1 : 0;
+                continue;
+            }
+            String n = line.substring(colon + 4);
+            if (!n.equals(Integer.toString(expected))) {
+                garbled++;
+                continue;
+            }
+            next.put(line.substring(0, colon), expected + 1);
+        }
+        for (Map.Entry<String, Integer> e : next.entrySet()) {
+            if (e.getValue() != messages) {
+                problems.add("Round " + round + ": the console showed " + e.getValue() + " of " + messages
+                        + " messages from " + e.getKey() + " in order");
+            }
+        }
+        if (garbled > 0) {
+            problems.add("Round " + round + ": " + garbled + " console lines were garbled or out of order");
+        }
+        // Prompts are numbered in the order they were set, so once one is drawn an older one never should be.
+        Matcher prompt = PROMPT.matcher(text);
+        int newest = -1;
+        int stale = 0;
+        while (prompt.find()) {
+            int n = Integer.parseInt(prompt.group(1));
+            stale += n < newest ? 1 : 0;
+            newest = Math.max(newest, n);
+        }
+        if (stale > 0) {
+            problems.add("Round " + round + ": " + stale + " prompts were drawn after a newer one");
+        }
+        if (lastPrompt != null && !text.endsWith(lastPrompt)) {
+            int start = Math.max(text.lastIndexOf('\n') + 1, 0);
+            problems.add("Round " + round + ": the console ended with \"" + text.substring(start)
+                    + "\", but the last prompt set was \"" + lastPrompt + "\"");
+        }
+    }
+
+    // User names are letters only.
+    private static String letters(int n) {
+        StringBuilder s = new StringBuilder();
+        for (; n > 0; n /= 26) {
+            s.append((char) ('a' + n % 26));
+        }
+        return s.toString();
+    }
+
+    // A headless session that checks the order of what it receives.
+    private static final class Peer extends ChatSession {
+        private final CountDownLatch loggedIn;
+        private final CountDownLatch received;
+        private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();    // Messages from each sender.
+        // Only touched by the event loop.
+        private final Map<String, Integer> lastSeen = new HashMap<>();        // Last n from each sender.
+        final List<String> disorder = new ArrayList<>();
+
+        Peer(ClientEngine engine, CountDownLatch loggedIn, CountDownLatch received) {
+            super(engine);
+            this.loggedIn = loggedIn;
+            this.received = received;
+        }
+
+        int count(String sender) {
+            AtomicInteger count = counts.get(sender);
+            return count == null ? 0 : count.get();
+        }
+
+        public void onLoginSuccess() {
+            super.onLoginSuccess();
+            loggedIn.countDown();
+        }
+
+        // Content is "s<sender> <n>". A sender's n only goes up, so each must be larger than the one before.
+        public void onIncomingMessage(CharSequence source, String content) {
+            super.onIncomingMessage(source, content);
+            int space = content.indexOf(' ');
+            String sender = content.substring(0, space);
+            int n = Integer.parseInt(content.substring(space + 1));
+            Integer previous = lastSeen.put(sender, n);
+            if (previous != null && n <= previous && disorder.size() < 10) {
+                disorder.add(username() + " got \"" + content + "\" after \"" + sender + " " + previous + "\"");
+            }
+            counts.computeIfAbsent(sender, k -> new AtomicInteger()).incrementAndGet();
+            received.countDown();
+        }
+    }
+
+    // The console, kept in memory.
+    private static final class Console extends ByteArrayOutputStream {
+        private volatile long lastWrite = System.nanoTime();
+
+        public synchronized void write(byte[] b, int off, int len) {
+            super.write(b, off, len);
+            lastWrite = System.nanoTime();
+        }
+
+        synchronized String text() {
+            return toString(StandardCharsets.UTF_8);
+        }
+
+        void awaitQuiet() throws InterruptedException {
+            while (System.nanoTime() - lastWrite < TimeUnit.MILLISECONDS.toNanos(QUIET_MILLIS)) {
+                Thread.sleep(QUIET_MILLIS / 4);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BenchmarkRunner is the entry point of benchmarks.jar. It accepts the usual JMH command line
+ * and always adds the GC profiler (-prof gc), so every run reports allocation rate per operation.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cmd);
+        boolean hasGc = cmd.getProfilers().stream().anyMatch(p -> p.getKlass().equals("gc")
+                || p.getKlass().equals(GCProfiler.class.getName()));
+        if (!hasGc) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * BlackholeHandler consumes every decoder event so JMH cannot optimise the decoding away.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient.bench;
+
+import imclient.ServerHandler;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+public class BlackholeHandler implements ServerHandler {
+    private final Blackhole bh;
+
+    public BlackholeHandler(Blackhole bh) {
+        this.bh = bh;
+    }
+
+    public void onLoginRetry() {
+        bh.consume(0);
+    }
+
+    public void onLoginSuccess() {
+        bh.consume(0);
+    }
+
+    public void onOfflineMessage(CharSequence source, String content) {
+        bh.consume(source.length());
+        bh.consume(content);
+    }
+
+    public void onOfflineMessagesEnd(int count) {
+        bh.consume(count);
+    }
+
+    public void onFriendsListStart() {
+        bh.consume(1);
+    }
+
+    public void onFriend(CharSequence name, boolean online) {
+        bh.consume(name.length());
+        bh.consume(online);
+    }
+
+    public void onFriendsListEnd() {
+        bh.consume(2);
+    }
+
+    public void onSendRequestFailed(CharSequence destination) {
+        bh.consume(destination.length());
+    }
+
+    public void onUserOffline(CharSequence destination) {
+        bh.consume(destination.length());
+    }
+
+    public void onUserDisconnected(CharSequence destination) {
+        bh.consume(destination.length());
+    }
+
+    public void onIncomingMessage(CharSequence source, String content) {
+        bh.consume(source.length());
+        bh.consume(content);
+    }
+
+    public void onAddFriendResult(boolean success, CharSequence name) {
+        bh.consume(success);
+        bh.consume(name.length());
+    }
+
+    public void onRemoveFriendResult(boolean success) {
+        bh.consume(success);
+    }
+
+    public void onUnknown(CharSequence line) {
+        bh.consume(line.length());
+    }
+
+    public void onLineEnd() {
+        bh.consume(3);
+    }
+
+    public void onDisconnect(IOException cause) {
+        bh.consume(cause);
+    }
+}
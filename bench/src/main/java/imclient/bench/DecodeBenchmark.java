@@ -0,0 +1,99 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * DecodeBenchmark measures ServerDecoder on the lines a busy client receives most,
+ * next to the split-based parsing it replaced and the binary frame of the same message.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient.bench;
+
+import imclient.BinaryProtocol;
+import imclient.FrameEncoder;
+import imclient.ServerDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+    private byte[] incoming;
+    private byte[] userOffline;
+    private byte[] addFriendFailed;
+    private ByteBuffer incomingFrame;                // Direct, like the connection's read buffer.
+    private int opcodeAt;
+    private ServerDecoder decoder;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        incoming = "INCOMING UMESSAGE=alice.Are you coming to the meeting at three?".getBytes(StandardCharsets.UTF_8);
+        userOffline = "SEND UMESSAGE FAILED=bob".getBytes(StandardCharsets.UTF_8);
+        addFriendFailed = "ADD FRIEND REQUEST=FAILED.carol".getBytes(StandardCharsets.UTF_8);
+        decoder = new ServerDecoder(new BlackholeHandler(bh));
+
+        FrameEncoder frame = new FrameEncoder().begin(BinaryProtocol.INCOMING_MESSAGE)
+                .field("alice").rest("Are you coming to the meeting at three?").end();
+        incomingFrame = ByteBuffer.allocateDirect(frame.length());
+        incomingFrame.put(frame.array(), frame.offset(), frame.length()).flip();
+        BinaryProtocol.readVarint(incomingFrame);
+        opcodeAt = incomingFrame.position();
+    }
+
+    @Benchmark
+    public void incomingMessage() {
+        decoder.decode(incoming, 0, incoming.length);
+    }
+
+    @Benchmark
+    public void incomingMessageBinary() {
+        incomingFrame.position(opcodeAt);
+        decoder.decode(incomingFrame);
+    }
+
+    @Benchmark
+    public void userOffline() {
+        decoder.decode(userOffline, 0, userOffline.length);
+    }
+
+    @Benchmark
+    public void addFriendFailed() {
+        decoder.decode(addFriendFailed, 0, addFriendFailed.length);
+    }
+
+    // The original readLine + startsWith chain + String.split("[=.]", 3) path, for comparison.
+    @Benchmark
+    public void incomingMessageLegacy(Blackhole bh) {
+        String fromServer = new String(incoming, StandardCharsets.UTF_8);
+        if (fromServer.equals("LOGIN REQUEST=RETRY")) {
+            bh.consume(0);
+        } else if (fromServer.startsWith("LOGIN REQUEST=SUCCESS.")) {
+            bh.consume(1);
+        } else if (fromServer.startsWith("SHOW FRIENDS LIST=")) {
+            bh.consume(2);
+        } else if (fromServer.startsWith("SEND MESSAGE REQUEST FAILED=")) {
+            bh.consume(3);
+        } else if (fromServer.equals("REMOVE FRIEND REQUEST=FAILED")) {
+            bh.consume(4);
+        } else if (fromServer.equals("REMOVE FRIEND REQUEST=SUCCESSFUL")) {
+            bh.consume(5);
+        } else if (fromServer.startsWith("SEND UMESSAGE FAILED=")) {
+            bh.consume(6);
+        } else if (fromServer.startsWith("SEND UMESSAGE DISCONNECT=")) {
+            bh.consume(7);
+        } else if (fromServer.startsWith("INCOMING UMESSAGE=")) {
+            String[] msg = fromServer.split("[=.]", 3);
+            bh.consume(msg[1]);
+            bh.consume(msg[2]);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * EncodeBenchmark measures building a SEND MESSAGE REQUEST line the way MessageThread
+ * sends it, next to the += concatenation it replaced.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient.bench;
+
+import imclient.RequestEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+    private final RequestEncoder encoder = new RequestEncoder();
+    private String friendName = "alice";
+    private String username = "bob";
+    private String input = "/msg alice Are you coming to the meeting at three?";
+    private int contentStart = "/msg alice ".length();
+
+    // Connection.send keeps one String per line, so the benchmark includes that copy.
+    @Benchmark
+    public String sendMessage() {
+        return encoder.sendMessage(friendName, username, input, contentStart, input.length()).toString();
+    }
+
+    @Benchmark
+    public String sendMessageLegacy() {
+        String[] parts = input.split(" ", 3);
+        String trimmedMessage = parts[2].trim();
+        String toServer = "SEND MESSAGE REQUEST=";
+        toServer += friendName + "." + username + "." + trimmedMessage;
+        return toServer;
+    }
+}
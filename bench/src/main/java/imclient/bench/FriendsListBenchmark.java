@@ -0,0 +1,93 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * FriendsListBenchmark measures decoding SHOW FRIENDS LIST= and partitioning it into online and
+ * offline friends, as ChatSession does into its PresenceCache. Printing is left out: ConsoleRenderer
+ * writes on its own thread, so timing it here would only measure how fast its queue fills.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient.bench;
+
+import imclient.PresenceCache;
+import imclient.ServerDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FriendsListBenchmark {
+    @Param({"10", "1000"})
+    public int friends;
+
+    private byte[] line;
+    private String legacyPayload;
+    private final PresenceCache presence = new PresenceCache();
+    private ServerDecoder decoder;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < friends; i++) {
+            sb.append(i == 0 ? "" : ".").append("friend").append(i).append(i % 3 == 0 ? ".True" : ".False");
+        }
+        legacyPayload = sb.toString();
+        line = ("SHOW FRIENDS LIST=" + legacyPayload).getBytes(StandardCharsets.UTF_8);
+        decoder = new ServerDecoder(new PresenceHandler(bh, presence));
+    }
+
+    @Benchmark
+    public PresenceCache decodeAndPartition() {
+        decoder.decode(line, 0, line.length);
+        return presence;
+    }
+
+    // The original split("[.]") and ArrayList partition from showFriends, without printing.
+    @Benchmark
+    public void partitionLegacy(Blackhole bh) {
+        String[] f = legacyPayload.split("[.]");
+        ArrayList<String> online = new ArrayList<>();
+        ArrayList<String> offline = new ArrayList<>();
+        for (int i = 0; i < f.length; i += 2) {
+            if (f[i + 1].equals("True")) {
+                online.add(f[i]);
+            } else {
+                offline.add(f[i]);
+            }
+        }
+        bh.consume(online);
+        bh.consume(offline);
+    }
+
+    // Loads the friends list into a PresenceCache the way ChatSession's handlers do.
+    private static final class PresenceHandler extends BlackholeHandler {
+        private final PresenceCache presence;
+
+        PresenceHandler(Blackhole bh, PresenceCache presence) {
+            super(bh);
+            this.presence = presence;
+        }
+
+        public void onFriendsListStart() {
+            presence.beginLoad();
+        }
+
+        public void onFriend(CharSequence name, boolean online) {
+            presence.put(name.toString(), online);
+        }
+
+        public void onFriendsListEnd() {
+            presence.endLoad(System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * Stephen Schmith
+ * IMClient.
+ * <p>
+ * OfflineBacklogBenchmark measures decoding the offline messages packed into
+ * LOGIN REQUEST=SUCCESS., for small and large backlogs, next to the split("[.]") it replaced.
+ * <p>
+ * Last Modified: 10/17/2026
+ */
+
+package imclient.bench;
+
+import imclient.ServerDecoder;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OfflineBacklogBenchmark {
+    @Param({"10", "1000"})
+    public int messages;
+
+    private byte[] line;
+    private ServerDecoder decoder;
+
+    @Setup
+    public void setup(Blackhole bh) {
+        StringBuilder sb = new StringBuilder("LOGIN REQUEST=SUCCESS.");
+        for (int i = 0; i < messages; i++) {
+            sb.append(i == 0 ? "" : ".").append("friend").append(i % 50).append(".Message number ").append(i);
+        }
+        line = sb.toString().getBytes(StandardCharsets.UTF_8);
+        decoder = new ServerDecoder(new BlackholeHandler(bh));
+    }
+
+    @Benchmark
+    public void decode() {
+        decoder.decode(line, 0, line.length);
+    }
+
+    // The original String + split("[.]") path, for comparison.
+    @Benchmark
+    public void decodeLegacy(Blackhole bh) {
+        String fromServer = new String(line, StandardCharsets.UTF_8);
+        String[] s = fromServer.split("[.]");
+        bh.consume((s.length - 1) / 2);
+        for (int i = 1; i < s.length; i++) {
+            bh.consume(s[i]);
+        }
+    }
+}